@@ -1,9 +1,12 @@
 package io.nms.client.common;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,8 +17,12 @@ import io.nms.messages.Receipt;
 import io.nms.messages.Specification;
 import io.nms.storage.NmsEbMessage;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 
@@ -31,6 +38,9 @@ public abstract class BaseClientVerticle extends AbstractVerticle {
 	
 	protected HashMap<String, Receipt> activeSpecs = new HashMap<String, Receipt>();	
 	
+	// storage provides the batch actions (add_routes, add_nodes...), see README
+	protected boolean storageBatch = false;
+	
 	EventBus eb = null;
 	
 	// implemented by AmqpVerticle
@@ -54,6 +64,11 @@ public abstract class BaseClientVerticle extends AbstractVerticle {
 		String host = config().getJsonObject("amqp").getString("host", "");
 		int port = config().getJsonObject("amqp").getInteger("port", 0);
 		
+		storageBatch = config().getJsonObject("storage", new JsonObject()).getBoolean("batchActions", false);
+		if (!storageBatch) {
+			LOG.info("Storage batch actions disabled, items are sent one by one");
+		}
+		
 		Future<Void> futConn = Future.future(promise -> createAmqpConnection(host, port, promise));
 		Future<Void> futAuth = futConn
 			.compose(v -> {
@@ -74,14 +89,92 @@ public abstract class BaseClientVerticle extends AbstractVerticle {
 		JsonObject response = new JsonObject();
 		response.put("service", serviceName);
 		response.put("action", message.getAction());
-		
-		JsonObject content = new JsonObject()
+		response.put("content", getServiceInfoContent());
+		message.reply(response);	      
+	}
+	
+	// overridden by services reporting additional information
+	protected JsonObject getServiceInfoContent() {
+		return new JsonObject()
 			.put("name", clientName)
 	        .put("role", clientRole)
 			.put("status", status)
 			.put("messages", msgNbr);
-		response.put("content", content);
-		message.reply(response);	      
+	}
+	
+	/*
+	 * Id of a new stored document (node, link, route, prefix), chosen by the
+	 * client so the in-memory copies and the published deltas are keyed
+	 * before storage replies; storage keeps the given _id (see README)
+	 */
+	protected static String newId() {
+		return UUID.randomUUID().toString();
+	}
+	
+	/*
+	 * Storage request for a batch of items: the batch action with {key: items}
+	 * if storage provides the batch actions, one item action per item otherwise
+	 */
+	protected void sendStorageBatch(String batchAction, String key, JsonArray items, 
+			String itemAction, Function<Object, JsonObject> itemParams, Handler<AsyncResult<JsonObject>> handler) {
+		if (!storageBatch) {
+			sendStorageItems(itemAction, items, itemParams, handler);
+			return;
+		}
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", batchAction)
+				.put("params", new JsonObject().put(key, items));
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				handler.handle(Future.succeededFuture((JsonObject)reply.result().body()));
+			} else {
+				handler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+	
+	/*
+	 * One storage request per item, sent together. Replied as a batch:
+	 * {"content": {"docs": [...]}} with the non-empty item contents, or the
+	 * first item error. Not atomic: the items stored before a failed one stay.
+	 */
+	protected void sendStorageItems(String itemAction, JsonArray items, 
+			Function<Object, JsonObject> itemParams, Handler<AsyncResult<JsonObject>> handler) {
+		List<Future> futs = new ArrayList<Future>();
+		for (Object item : items) {
+			Future<Object> fut = Future.future();
+			futs.add(fut);
+			JsonObject toStorageMsg = new JsonObject()
+					.put("action", itemAction)
+					.put("params", itemParams.apply(item));
+			eb.send("nms.storage", toStorageMsg, reply -> {
+				if (reply.failed()) {
+					fut.fail(reply.cause());
+					return;
+				}
+				JsonObject body = (JsonObject)reply.result().body();
+				if (body.containsKey("error")) {
+					fut.fail(body.getString("error"));
+				} else {
+					fut.complete(body.getValue("content"));
+				}
+			});
+		}
+		CompositeFuture.all(futs).setHandler(ar -> {
+			if (ar.failed()) {
+				handler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			JsonArray docs = new JsonArray();
+			for (int i = 0; i < futs.size(); i++) {
+				Object content = ar.result().resultAt(i);
+				if ((content != null) && !((content instanceof JsonObject) && ((JsonObject) content).isEmpty())) {
+					docs.add(content);
+				}
+			}
+			handler.handle(Future.succeededFuture(new JsonObject()
+					.put("content", new JsonObject().put("docs", docs))));
+		});
 	}
 	
 	protected void publishLogging(String message) {
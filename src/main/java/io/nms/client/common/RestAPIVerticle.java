@@ -4,14 +4,23 @@ import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.nms.storage.NmsEbMessage;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
@@ -31,6 +40,9 @@ public class RestAPIVerticle extends AbstractVerticle {
 	private int port = 9090;
 	private static final String ADDRESS = "nms.*";
 	private final String serviceName = "nms.rest";
+	private static final long STREAM_TIMEOUT_MS = 300000;
+	private static final List<String> STREAM_ACTIONS = Arrays.asList(
+			"nms.topology/get_all_nodes", "nms.topology/get_all_links");
 	
 	private int msgNbr = 0;
 	
@@ -134,6 +146,9 @@ public class RestAPIVerticle extends AbstractVerticle {
 	 * 		}
 	 * 	}' 
 	 * http://10.11.200.123:9000/nms
+	 * 
+	 * "stream" : true next to "service" streams the docs of get_all_nodes
+	 * and get_all_links as a chunked response.
 	 * */
 	private void processRequest(RoutingContext routingContext) {
 		JsonObject response = new JsonObject();
@@ -187,6 +202,17 @@ public class RestAPIVerticle extends AbstractVerticle {
 			return;	
 		}		
 		msgNbr++;
+		if (request.getBoolean("stream", false)) {
+			if (!STREAM_ACTIONS.contains(service + "/" + query.getString("action"))) {
+				response.put("error", "streaming not supported for this service or action");
+				routingContext.response()
+			    	.putHeader("content-type", "application/json; charset=utf-8")
+			    	.end(response.encode());
+				return;
+			}
+			streamRequest(routingContext, service, query);
+			return;
+		}
 		eb.send(service, query, reply -> {			
 			if (reply.succeeded()) {				
 				routingContext.response()
@@ -201,6 +227,88 @@ public class RestAPIVerticle extends AbstractVerticle {
 		});
 	}
 	
+	/*
+	 * Asks the service to send its docs in chunks to a temporary address and
+	 * writes them as they come, in the same {"service", "action", "content":
+	 * {"docs": []}} form as a plain response. Nothing is written before the
+	 * first chunk, so a service failing early gives a plain error response.
+	 * A chunk is acknowledged once the HTTP response can take more data, so
+	 * at most one chunk is held per request.
+	 */
+	private void streamRequest(RoutingContext routingContext, String service, JsonObject query) {
+		HttpServerResponse httpResponse = routingContext.response()
+				.putHeader("content-type", "application/json; charset=utf-8");
+		AtomicBoolean started = new AtomicBoolean(false);
+		AtomicInteger written = new AtomicInteger();
+		String address = serviceName + ".stream." + UUID.randomUUID().toString();
+		MessageConsumer<JsonObject> consumer = eb.consumer(address, (Message<JsonObject> chunk) -> {
+			if (httpResponse.closed()) {
+				chunk.fail(0, "client disconnected");
+				return;
+			}
+			if (!started.getAndSet(true)) {
+				writeStreamHead(httpResponse, service, query);
+			}
+			JsonArray docs = chunk.body().getJsonObject("content", new JsonObject())
+					.getJsonArray("docs", new JsonArray());
+			StringBuilder sb = new StringBuilder();
+			for (Object doc : docs) {
+				if (written.getAndIncrement() > 0) {
+					sb.append(',');
+				}
+				sb.append(((JsonObject) doc).encode());
+			}
+			httpResponse.write(sb.toString());
+			if (httpResponse.writeQueueFull()) {
+				httpResponse.drainHandler(v -> chunk.reply(new JsonObject()));
+			} else {
+				chunk.reply(new JsonObject());
+			}
+		});
+		
+		query.getJsonObject("params").put("stream", address);
+		DeliveryOptions options = new DeliveryOptions().setSendTimeout(STREAM_TIMEOUT_MS);
+		eb.send(service, query, options, reply -> {
+			consumer.unregister();
+			if (httpResponse.closed()) {
+				return;
+			}
+			String error = null;
+			if (reply.failed()) {
+				error = "failed to reach service";
+			} else if (((JsonObject)reply.result().body()).containsKey("error")) {
+				error = ((JsonObject)reply.result().body()).getString("error");
+			}
+			if (!started.get()) {
+				if (error != null) {
+					JsonObject response = new JsonObject();
+					response.put("service", (reply.failed()) ? serviceName : service);
+					response.put("action", query.getString("action"));
+					response.put("error", error);
+					httpResponse.end(response.encode());
+					return;
+				}
+				writeStreamHead(httpResponse, service, query);
+			}
+			if (error == null) {
+				httpResponse.end("]}}");
+			} else {
+				// the status is already sent, the docs written are followed by the error
+				httpResponse.end("]}," + new JsonObject().put("error", error).encode().substring(1));
+			}
+		});
+	}
+	
+	private void writeStreamHead(HttpServerResponse httpResponse, String service, JsonObject query) {
+		// {"service": ..., "action": ..., "content": {"docs": [
+		String head = new JsonObject()
+				.put("service", service)
+				.put("action", query.getString("action"))
+				.encode();
+		httpResponse.setChunked(true);
+		httpResponse.write(head.substring(0, head.length() - 1) + ",\"content\":{\"docs\":[");
+	}
+	
 	protected void publishLogging(String message) {
 		Timestamp ts = new Timestamp(new Date().getTime());
 		JsonObject content = new JsonObject()
@@ -3,18 +3,43 @@ package io.nms.client.common;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
-import io.nms.client.routing.DijkstraAlgorithm;
-import io.nms.client.routing.Graph;
+import io.nms.client.routing.AllPairsPaths;
+import io.nms.client.routing.CompactGraph;
+import io.nms.client.routing.ContractionHierarchy;
+import io.nms.client.routing.EqualCostPaths;
+import io.nms.client.routing.GraphChange;
+import io.nms.client.routing.GraphPath;
+import io.nms.client.routing.KShortestPaths;
+import io.nms.client.routing.LandmarkIndex;
+import io.nms.client.routing.LoopFreeAlternates;
+import io.nms.client.routing.NameTrie;
+import io.nms.client.routing.PathConstraints;
+import io.nms.client.routing.PathMatrix;
+import io.nms.client.routing.PointToPointSearch;
+import io.nms.client.routing.ReachabilityIndex;
+import io.nms.client.routing.RouteMetric;
+import io.nms.client.routing.RouteTable;
+import io.nms.client.routing.ShortestPathTree;
+import io.nms.client.routing.ShortestPathTreeCache;
+import io.nms.client.routing.TopologySnapshot;
 import io.nms.messages.Capability;
 import io.nms.messages.Message;
 import io.nms.messages.Receipt;
 import io.nms.messages.Result;
 import io.nms.messages.Specification;
 import io.nms.storage.NmsEbMessage;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
@@ -23,19 +48,78 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 	private static final int TOPO_UPDATE_PERIOD_MS = 10000;
 	private static final int RESET_PERIOD_S = 60;
 	private static final int SPEC_PERIOD_MS = 5000;
+	private static final int SPT_CACHE_SIZE = 128;
+	private static final int MAX_PATHS = 8;
+	private static final int ECMP_MAX_PATHS = 16;
+	private static final int LANDMARK_NBR = 8;
+	private static final int ALL_PAIRS_MAX_NODES = 2048;
+	private static final int MATRIX_MAX_NODES = 1024;
+	private static final int ALL_PAIRS_MAX_ROWS = 64;
+	
+	// path search modes of add_auto_route
+	private static final String SEARCH_TREE = "tree";
+	private static final String SEARCH_BIDIRECTIONAL = "bidirectional";
+	private static final String SEARCH_ALT = "alt";
+	private static final String SEARCH_CH = "ch";
 	
 	protected HashMap<String, Capability> knownCaps = new HashMap<String, Capability>();
 	protected Instant lastUpdate = Instant.now();
-	protected Graph topology = new Graph();
+	// current topology, replaced atomically on each update
+	protected final AtomicReference<TopologySnapshot> topology = 
+			new AtomicReference<TopologySnapshot>(TopologySnapshot.empty());
+	// last topology delta applied, -1 before the first snapshot
+	protected long topologyEpoch = 0;
+	protected long topologySeq = -1;
+	protected boolean topologyResync = false;
+	protected ShortestPathTreeCache sptCache = null;
+	// write-through copy of the stored routes
+	protected final RouteTable routeTable = new RouteTable();
+	// registered prefixes for longest-prefix match
+	protected final NameTrie prefixTrie = new NameTrie();
+	// sequence numbers of the route and prefix deltas
+	protected long routeSeq = 0;
+	protected long prefixSeq = 0;
+	protected int landmarkNbr = LANDMARK_NBR;
+	// metrics whose landmarks are being built for a search
+	protected final Set<RouteMetric> landmarksBuilding = new HashSet<RouteMetric>();
+	protected int allPairsMaxNodes = ALL_PAIRS_MAX_NODES;
+	protected int ecmpMaxPaths = ECMP_MAX_PATHS;
+	// loop-free alternates of the default metric, for topologies up to allPairsMaxNodes
+	protected boolean fastReroute = true;
+	// pool of the all-pairs computations
+	protected ForkJoinPool pathPool = null;
+	// background indexes, computed for one version at a time
+	protected boolean indexesBuilding = false;
+	protected long indexedVersion = -1;
+	// contraction hierarchy of the default metric, rebuilt for each version
+	protected boolean hierarchyEnabled = false;
+	protected boolean hierarchyBuilding = false;
+	protected JsonObject hierarchyStats = new JsonObject();
+	protected long hierarchyQueries = 0;
+	protected long hierarchyQueryNanos = 0;
+	// hierarchy queries run on the event loop, one at a time
+	protected final ContractionHierarchy.Workspace hierarchyWorkspace = new ContractionHierarchy.Workspace();
 	
 	public void start(Future<Void> fut) {
 		serviceName = "nms.routing";
+		JsonObject routingConfig = config().getJsonObject("routing", new JsonObject());
+		sptCache = new ShortestPathTreeCache(routingConfig.getInteger("sptCacheSize", SPT_CACHE_SIZE));
+		landmarkNbr = routingConfig.getInteger("landmarks", LANDMARK_NBR);
+		allPairsMaxNodes = routingConfig.getInteger("allPairsMaxNodes", ALL_PAIRS_MAX_NODES);
+		hierarchyEnabled = routingConfig.getBoolean("hierarchy", false);
+		ecmpMaxPaths = routingConfig.getInteger("ecmpMaxPaths", ECMP_MAX_PATHS);
+		fastReroute = routingConfig.getBoolean("fastReroute", true);
+		// 0: one thread per available processor
+		int parallelism = routingConfig.getInteger("parallelism", 0);
+		pathPool = new ForkJoinPool((parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors());
 		Future<Void> futBase = Future.future(promise -> super.start(promise));
 		futBase.setHandler(res -> {
 			if (res.failed()) {
 				fut.fail(res.cause());
 			} else {
 				getTopology();
+				loadRoutes();
+				loadPrefixes();
 				setTopologyListener();				
 				// update topo every 60s
 				/*vertx.setPeriodic(TOPO_UPDATE_PERIOD_MS, id -> {
@@ -73,8 +157,7 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 				JsonObject response = (JsonObject)reply.result().body();				
 				if (response.containsKey("content")) {
 					LOG.info("got topology");
-					JsonObject jGraph = (response.getJsonObject("content"));
-					topology = new Graph(jGraph);
+					applyTopologyUpdate(response.getJsonObject("content"));
 				} else {
 					LOG.error("Cannot get topology", response.getString("error"));
 				}
@@ -84,68 +167,580 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 		});
 	}
 	
-	// routing listens to updates from topology service
+	// fills the route table, storage is then only used for writes
+	private void loadRoutes() {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "get_all_routes")
+				.put("params", new JsonObject());
+
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				JsonObject response = (JsonObject)reply.result().body();
+				if (response.containsKey("content")) {
+					routeTable.load(response.getJsonObject("content").getJsonArray("docs", new JsonArray()));
+					LOG.info("[" + serviceName + "] " + routeTable.size() + " routes loaded.");
+				} else {
+					LOG.error("Cannot load routes", response.getString("error"));
+				}
+			} else {
+				LOG.error("Cannot load routes", reply.cause().getMessage());
+			}
+		});
+	}
+	
+	private void loadPrefixes() {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "get_all_prefixes")
+				.put("params", new JsonObject());
+
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				JsonObject response = (JsonObject)reply.result().body();
+				if (response.containsKey("content")) {
+					prefixTrie.load(response.getJsonObject("content").getJsonArray("docs", new JsonArray()));
+					LOG.info("[" + serviceName + "] " + prefixTrie.size() + " prefixes loaded.");
+				} else {
+					LOG.error("Cannot load prefixes", response.getString("error"));
+				}
+			} else {
+				LOG.error("Cannot load prefixes", reply.cause().getMessage());
+			}
+		});
+	}
+	
+	// builds a new snapshot and makes it visible to route computations
+	private TopologySnapshot publishTopology(JsonObject jGraph) {
+		if (topology.get().getGraph().matches(jGraph)) {
+			// already up to date through incremental changes
+			return topology.get();
+		}
+		CompactGraph graph = new CompactGraph(jGraph);
+		TopologySnapshot snapshot = topology.updateAndGet(prev -> prev.next(graph));
+		sptCache.invalidate(snapshot.getVersion());
+		LOG.info("[" + serviceName + "] topology version " + snapshot.getVersion());
+		precomputeIndexes();
+		buildHierarchy();
+		return snapshot;
+	}
+	
+	/*
+	 * Applies an incremental change, repairing cached trees instead of dropping them.
+	 * Once deleted nodes pile up the graph is compacted and the trees are dropped.
+	 */
+	private void applyTopologyChange(GraphChange change) {
+		if (change == null) {
+			return;
+		}
+		TopologySnapshot previous = topology.get();
+		if (change.getPrevious() != previous.getGraph()) {
+			return;
+		}
+		boolean compact = change.getGraph().needsCompaction();
+		TopologySnapshot snapshot = previous.next(compact ? change.getGraph().compact() : change.getGraph());
+		if (topology.compareAndSet(previous, snapshot)) {
+			if (compact) {
+				sptCache.invalidate(snapshot.getVersion());
+			} else {
+				sptCache.update(previous, snapshot, change);
+			}
+			LOG.info("[" + serviceName + "] topology version " + snapshot.getVersion() 
+					+ (compact ? " (compacted)" : ""));
+			precomputeIndexes();
+			buildHierarchy();
+		}
+	}
+	
+	/*
+	 * Reachability and landmarks of the default metric are built in the
+	 * background for the current version, one build at a time; a build
+	 * stops once its version is replaced and the version published
+	 * meanwhile is built next. Loop-free alternates are only built when
+	 * a link of the version fails.
+	 */
+	private void precomputeIndexes() {
+		TopologySnapshot snapshot = topology.get();
+		if (indexesBuilding || (snapshot.getVersion() == indexedVersion)) {
+			return;
+		}
+		indexesBuilding = true;
+		vertx.<Void>executeBlocking(promise -> {
+			snapshot.getReachability();
+			if ((landmarkNbr > 0) && (topology.get() == snapshot)) {
+				snapshot.getLandmarks(RouteMetric.HOP_COUNT, landmarkNbr);
+			}
+			promise.complete();
+		}, false, res -> {
+			indexesBuilding = false;
+			indexedVersion = snapshot.getVersion();
+			if (res.failed()) {
+				LOG.warn("[" + serviceName + "] indexes not computed", res.cause());
+			}
+			precomputeIndexes();
+		});
+	}
+	
+	/*
+	 * Builds the contraction hierarchy of the current version in the background,
+	 * one build at a time; a version published meanwhile is built next
+	 */
+	private void buildHierarchy() {
+		TopologySnapshot snapshot = topology.get();
+		if (!hierarchyEnabled || hierarchyBuilding || !snapshot.isSet() 
+				|| (snapshot.getHierarchy(RouteMetric.HOP_COUNT) != null)) {
+			return;
+		}
+		hierarchyBuilding = true;
+		vertx.<ContractionHierarchy>executeBlocking(promise -> {
+			promise.complete(snapshot.buildHierarchy(RouteMetric.HOP_COUNT));
+		}, false, res -> {
+			hierarchyBuilding = false;
+			if (res.succeeded()) {
+				ContractionHierarchy ch = res.result();
+				hierarchyStats = new JsonObject()
+						.put("version", snapshot.getVersion())
+						.put("buildMs", ch.getBuildMillis())
+						.put("shortcuts", ch.getShortcutCount())
+						.put("coreNodes", ch.getCoreSize())
+						.put("memoryBytes", ch.getMemoryBytes());
+				LOG.info("[" + serviceName + "] contraction hierarchy of version " + snapshot.getVersion() 
+						+ " built in " + ch.getBuildMillis() + " ms");
+			} else {
+				LOG.warn("[" + serviceName + "] contraction hierarchy not built", res.cause());
+			}
+			buildHierarchy();
+		});
+	}
+	
+	// routing listens to the topology deltas published by topology service
 	protected void setTopologyListener() {
 		eb.consumer("nms.info.topology", message -> {
 			LOG.info("[" + serviceName + "] got topology update.");
-			JsonObject jGraph = ((JsonObject)message.body()).getJsonObject("content");
-			topology = new Graph(jGraph);			
+			if (!topologyResync) {
+				applyTopologyUpdate(((JsonObject)message.body()).getJsonObject("content"));
+			}
 		});
-		eb.consumer("nms.info.topology.nodes", message -> {
-			// TODO: check event type add/delete/update...
-			LOG.info("[" + serviceName + "] a node has been deleted.");
-			JsonObject node = ((JsonObject)message.body()).getJsonObject("content");
-			
-			// delete corresponding prefixes
-			JsonObject toStorageMsg1 = new JsonObject()
-					.put("action", "del_prefix_by_node")
-					.put("params", node);
+	}
+	
+	/*
+	 * Applies {epoch, seq, deltas}, {epoch, seq, snapshot} or a whole
+	 * topology {nodes, links, epoch, seq}. Deltas must follow the last
+	 * one applied, otherwise the missing ones are requested; the deltas
+	 * of a message are applied together.
+	 */
+	private void applyTopologyUpdate(JsonObject content) {
+		long epoch = content.getLong("epoch", 0L);
+		if (content.containsKey("snapshot") || content.containsKey("nodes")) {
+			JsonObject jGraph = content.containsKey("snapshot") ? content.getJsonObject("snapshot") : content;
+			long seq = content.getLong("seq", -1L);
+			if ((epoch == topologyEpoch) && (seq >= 0) && (seq < topologySeq)) {
+				// older than the deltas already applied
+				return;
+			}
+			publishTopology(jGraph);
+			topologyEpoch = epoch;
+			topologySeq = seq;
+			return;
+		}
+		List<JsonObject> batch = new ArrayList<JsonObject>();
+		for (Object o : content.getJsonArray("deltas", new JsonArray())) {
+			JsonObject delta = (JsonObject) o;
+			long seq = delta.getLong("seq", -1L);
+			if ((epoch != topologyEpoch) || (topologySeq < 0) || (seq > topologySeq + 1)) {
+				LOG.warn("[" + serviceName + "] topology delta " + seq + " out of sequence.");
+				applyTopologyDeltas(batch);
+				resyncTopology();
+				return;
+			}
+			if (seq == topologySeq + 1) {
+				batch.add(delta);
+				topologySeq = seq;
+			}
+		}
+		applyTopologyDeltas(batch);
+	}
+	
+	// requests the deltas following the last one applied
+	private void resyncTopology() {
+		if (topologyResync) {
+			return;
+		}
+		topologyResync = true;
+		JsonObject toTopoMsg = new JsonObject()
+				.put("action", "get_topology_since")
+				.put("params", new JsonObject()
+						.put("epoch", topologyEpoch)
+						.put("seq", topologySeq));
 
-			eb.send("nms.storage", toStorageMsg1, reply -> {
-				if (reply.succeeded()) {
-					LOG.info("[" + serviceName + "] prefixes updated.");
-					publishUpdatedPrefixes();
+		eb.send("nms.topology", toTopoMsg, reply -> {
+			msgNbr++;
+			topologyResync = false;
+			if (reply.succeeded() && ((JsonObject)reply.result().body()).containsKey("content")) {
+				applyTopologyUpdate(((JsonObject)reply.result().body()).getJsonObject("content"));
+			} else {
+				LOG.error("Cannot resync topology");
+			}
+		});
+	}
+	
+	/*
+	 * Folds consecutive deltas into one graph change: a node or link added
+	 * then deleted within the batch cancels out. Routes and prefixes of the
+	 * deleted nodes and links are then handled once for the batch.
+	 */
+	private void applyTopologyDeltas(List<JsonObject> deltas) {
+		if (deltas.isEmpty()) {
+			return;
+		}
+		LinkedHashMap<String, JsonObject> addedNodes = new LinkedHashMap<String, JsonObject>();
+		LinkedHashMap<String, JsonObject> addedLinks = new LinkedHashMap<String, JsonObject>();
+		Set<String> deletedNodes = new LinkedHashSet<String>();
+		Set<String> deletedLinks = new LinkedHashSet<String>();
+		boolean refresh = false;
+		for (JsonObject delta : deltas) {
+			JsonObject doc = delta.getJsonObject("doc", new JsonObject());
+			String id = doc.getString("_id", "");
+			boolean isNode = "node".equals(delta.getString("type"));
+			switch (delta.getString("op", "")) {
+			case "add":
+				(isNode ? addedNodes : addedLinks).put(id, doc);
+				break;
+			case "delete":
+				if (isNode) {
+					addedNodes.remove(id);
+					addedLinks.values().removeIf(link -> id.equals(link.getString("source")) 
+							|| id.equals(link.getString("target")));
+					deletedNodes.add(id);
 				} else {
-					LOG.warn("[" + serviceName + "] prefixes not updated.");
+					addedLinks.remove(id);
+					deletedLinks.add(id);
 				}
-			});
-			
-			// delete corresponding routes
-			JsonObject toStorageMsg2 = new JsonObject()
-					.put("action", "del_routes_by_node")
-					.put("params", node);
+				break;
+			default:
+				// updates are rare, the whole topology is read again
+				refresh = true;
+			}
+		}
+		TopologySnapshot previous = topology.get();
+		applyTopologyChange(previous.getGraph().apply(deletedNodes, deletedLinks, 
+				addedNodes.values(), addedLinks.values()));
+		onTopologyDeletions(previous, deletedNodes, deletedLinks);
+		if (refresh) {
+			getTopology();
+		}
+	}
+	
+	private void onTopologyDeletions(TopologySnapshot previous, Set<String> nodeIds, Set<String> linkIds) {
+		if (nodeIds.isEmpty() && linkIds.isEmpty()) {
+			return;
+		}
+		LOG.info("[" + serviceName + "] " + nodeIds.size() + " nodes and " + linkIds.size() + " links deleted.");
+		for (String nodeId : nodeIds) {
+			deletePrefixesByNode(nodeId);
+		}
+		
+		// ends of the deleted links, as known before the change
+		CompactGraph previousGraph = previous.getGraph();
+		LinkedHashMap<String, String[]> linkEnds = new LinkedHashMap<String, String[]>();
+		for (String linkId : linkIds) {
+			int e = previousGraph.edgeOf(linkId);
+			linkEnds.put(linkId, (e < 0) ? new String[] { "", "" } 
+					: new String[] { previousGraph.nodeId(previousGraph.source(e)), 
+							previousGraph.nodeId(previousGraph.target(e)) });
+		}
+		
+		// impacted routes once each, from the route table if loaded
+		List<JsonObject> impacted = null;
+		if (routeTable.isLoaded()) {
+			LinkedHashMap<String, JsonObject> found = new LinkedHashMap<String, JsonObject>();
+			for (String nodeId : nodeIds) {
+				routeTable.getByNode(nodeId).forEach(route -> found.put(route.getString("_id"), route));
+			}
+			for (String[] ends : linkEnds.values()) {
+				routeTable.getByLink(ends[0], ends[1]).forEach(route -> found.put(route.getString("_id"), route));
+			}
+			impacted = new ArrayList<JsonObject>(found.values());
+		}
+		
+		/* 
+		 * reroute auto routes, the others onto loop-free alternates if a
+		 * single link failed; delete the remaining ones
+		 */
+		Runnable deleteRemaining = () -> {
+			for (String nodeId : nodeIds) {
+				deleteRoutesByNode(new JsonObject().put("id", nodeId));
+			}
+			linkEnds.forEach((linkId, ends) -> 
+					deleteRoutesByLink(new JsonObject().put("id", linkId), ends[0], ends[1]));
+		};
+		final List<JsonObject> routes = impacted;
+		if (!fastReroute || !nodeIds.isEmpty() || (linkIds.size() != 1) || ((routes != null) && routes.isEmpty())
+				|| !previous.isSet() || (previous.getGraph().liveNodeCount() > allPairsMaxNodes)) {
+			rerouteBrokenRoutes(routes, null, -1, deleteRemaining);
+			return;
+		}
+		// alternates of the version holding the link, built on its first link failure
+		String linkId = linkIds.iterator().next();
+		vertx.<LoopFreeAlternates>executeBlocking(promise -> {
+			promise.complete(previous.getLoopFreeAlternates(RouteMetric.HOP_COUNT, pathPool));
+		}, false, res -> {
+			if (res.failed()) {
+				LOG.warn("[" + serviceName + "] loop-free alternates not computed", res.cause());
+			}
+			LoopFreeAlternates lfa = res.succeeded() ? res.result() : null;
+			int edge = (lfa == null) ? -1 : lfa.getPaths().getGraph().edgeOf(linkId);
+			rerouteBrokenRoutes(routes, (edge < 0) ? null : lfa, edge, deleteRemaining);
+		});
+	}
+	
+	// deletes the prefixes of a deleted node
+	private void deletePrefixesByNode(String nodeId) {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "del_prefix_by_node")
+				.put("params", new JsonObject().put("id", nodeId));
 
-			eb.send("nms.storage", toStorageMsg2, reply -> {
-				if (reply.succeeded()) {
-					LOG.info("[" + serviceName + "] routes updated.");
-					publishUpdatedRoutes();
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				LOG.info("[" + serviceName + "] prefixes updated.");
+				List<JsonObject> removed = prefixTrie.removeByNode(nodeId);
+				if (prefixTrie.isLoaded()) {
+					JsonArray docs = new JsonArray();
+					for (JsonObject prefix : removed) {
+						docs.add(new JsonObject().put("_id", prefix.getString("_id")));
+					}
+					publishPrefixDelta("delete", docs);
 				} else {
-					LOG.warn("[" + serviceName + "] routes not updated.");
+					publishPrefixSnapshot();
 				}
-			});
+			} else {
+				LOG.warn("[" + serviceName + "] prefixes not updated.");
+			}
 		});
-		
-		eb.consumer("nms.info.topology.links", message -> {
-			// TODO: check event type add/delete/update...
-			LOG.info("[" + serviceName + "] got topology update.");
-			JsonObject link = ((JsonObject)message.body()).getJsonObject("content");
-			
-			// delete corresponding routes
-			JsonObject toStorageMsg = new JsonObject()
-					.put("action", "del_routes_by_link")
-					.put("params", link);
+	}
+	
+	private void deleteRoutesByNode(JsonObject node) {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "del_routes_by_node")
+				.put("params", node);
 
-			eb.send("nms.storage", toStorageMsg, reply -> {
-				if (reply.succeeded()) {
-					LOG.info("[" + serviceName + "] routes updated.");
-					publishUpdatedRoutes();
-				} else {
-					LOG.warn("[" + serviceName + "] routes not updated.");
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				LOG.info("[" + serviceName + "] routes updated.");
+				publishRouteDeletion(routeTable.removeByNode(node.getString("id", "")));
+			} else {
+				LOG.warn("[" + serviceName + "] routes not updated.");
+			}
+		});
+	}
+	
+	private void deleteRoutesByLink(JsonObject link, String sourceId, String targetId) {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "del_routes_by_link")
+				.put("params", link);
+
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				LOG.info("[" + serviceName + "] routes updated.");
+				publishRouteDeletion(routeTable.removeByLink(sourceId, targetId));
+			} else {
+				LOG.warn("[" + serviceName + "] routes not updated.");
+			}
+		});
+	}
+	
+	/*
+	 * Moves the routes broken by a topology change onto new paths with one
+	 * storage write and one publication. The impacted routes come from the
+	 * route table, or from storage if it is not loaded (NULL). Auto routes
+	 * are recomputed with their options on the current snapshot; the others
+	 * follow the loop-free alternate of the failed edge if given. Broken
+	 * backup and equal-cost paths not recomputed are dropped. Routes whose
+	 * path cannot be moved are left to deleteRemaining.
+	 */
+	private void rerouteBrokenRoutes(List<JsonObject> impacted, LoopFreeAlternates lfa, int failedEdge, 
+			Runnable deleteRemaining) {
+		if (impacted == null) {
+			JsonObject getRoutesMsg = new JsonObject()
+					.put("action", "get_all_routes")
+					.put("params", new JsonObject());
+			eb.send("nms.storage", getRoutesMsg, rep -> {
+				if (rep.failed() || !((JsonObject)rep.result().body()).containsKey("content")) {
+					LOG.warn("[" + serviceName + "] routes not rerouted.");
+					deleteRemaining.run();
+					return;
 				}
+				List<JsonObject> routes = new ArrayList<JsonObject>();
+				((JsonObject)rep.result().body()).getJsonObject("content")
+						.getJsonArray("docs", new JsonArray()).forEach(doc -> routes.add((JsonObject) doc));
+				rerouteBrokenRoutes(routes, lfa, failedEdge, deleteRemaining);
 			});
+			return;
+		}
+		TopologySnapshot snapshot = topology.get();
+		CompactGraph graph = snapshot.getGraph();
+		JsonArray rerouted = new JsonArray();
+		boolean lost = false;
+		for (JsonObject candidate : impacted) {
+			JsonArray path = candidate.getJsonArray("path", new JsonArray());
+			int hop = firstBrokenHop(graph, path);
+			boolean brokenAlternate = false;
+			List<JsonArray> paths = RouteTable.pathsOf(candidate);
+			for (int i = 1; (i < paths.size()) && !brokenAlternate; i++) {
+				brokenAlternate = (firstBrokenHop(graph, paths.get(i)) >= 0);
+			}
+			if ((hop < 0) && !brokenAlternate) {
+				continue;
+			}
+			JsonObject route = candidate.copy();
+			List<String> newPath = null;
+			if (route.getBoolean("auto", false)) {
+				newPath = recomputeAutoRoute(snapshot, route);
+			}
+			if ((newPath == null) && (hop >= 0) && (lfa != null)) {
+				newPath = repairWithAlternate(lfa, failedEdge, path, hop);
+			}
+			if ((newPath == null) && (hop >= 0)) {
+				lost = true;
+				continue;
+			}
+			if (newPath != null) {
+				route.put("path", new JsonArray(newPath));
+			}
+			dropBrokenPaths(graph, route, "backupPaths");
+			dropBrokenPaths(graph, route, "ecmpPaths");
+			route.put("status", "pending");
+			rerouted.add(route);
+		}
+		final boolean deleteLost = lost;
+		if (rerouted.isEmpty()) {
+			if (deleteLost) {
+				deleteRemaining.run();
+			}
+			return;
+		}
+		updateStoredRoutes(rerouted, reply -> {
+			if (reply.succeeded()) {
+				LOG.info("[" + serviceName + "] " + rerouted.size() + " routes rerouted.");
+				rerouted.forEach(route -> routeTable.put((JsonObject) route));
+				publishRouteDelta("update", rerouted);
+			} else {
+				LOG.warn("[" + serviceName + "] routes not rerouted.");
+			}
+			// the routes still broken are deleted
+			if (deleteLost || reply.failed()) {
+				deleteRemaining.run();
+			}
+		});
+	}
+	
+	/*
+	 * Replaces stored routes, keeping their _id. Without the batch actions,
+	 * storage has no update: each route is deleted then added again.
+	 */
+	private void updateStoredRoutes(JsonArray routes, Handler<AsyncResult<JsonObject>> handler) {
+		if (storageBatch) {
+			sendStorageBatch("update_routes", "routes", routes, null, null, handler);
+			return;
+		}
+		sendStorageItems("del_route", routes, 
+				route -> new JsonObject().put("_id", ((JsonObject) route).getString("_id")), res -> {
+			if (res.failed()) {
+				handler.handle(res);
+				return;
+			}
+			sendStorageItems("add_route", routes, route -> (JsonObject) route, handler);
 		});
 	}
 	
+	// path of an auto route on the snapshot with its stored options, NULL if none
+	private List<String> recomputeAutoRoute(TopologySnapshot snapshot, JsonObject route) {
+		if (checkReachability(snapshot, route.getString("fromNode", ""), route.getString("targetNode", "")) != null) {
+			return null;
+		}
+		try {
+			RouteMetric metric = RouteMetric.fromJson(route.getValue("metric"));
+			PathConstraints constraints = PathConstraints.fromJson(snapshot.getGraph(), route);
+			// every search mode gives a shortest path, the default one is used
+			return computeAutoRoute(snapshot, route, metric, constraints, hierarchyEnabled ? SEARCH_CH : SEARCH_TREE);
+		} catch (IllegalArgumentException | ClassCastException e) {
+			return null;
+		}
+	}
+	
+	// path up to the failed edge, then the repair path of its source, NULL if none
+	private List<String> repairWithAlternate(LoopFreeAlternates lfa, int failedEdge, JsonArray path, int hop) {
+		CompactGraph graph = lfa.getPaths().getGraph();
+		int source = graph.source(failedEdge);
+		if ((hop + 1 >= path.size()) || !graph.nodeId(source).equals(path.getString(hop)) 
+				|| !graph.nodeId(graph.target(failedEdge)).equals(path.getString(hop + 1))) {
+			return null;
+		}
+		int destination = graph.indexOf(path.getString(path.size() - 1));
+		int[] repair = (destination < 0) ? null : lfa.getRepairPath(source, destination, failedEdge);
+		if (repair == null) {
+			return null;
+		}
+		List<String> newPath = new ArrayList<String>();
+		for (int i = 0; i < hop; i++) {
+			newPath.add(path.getString(i));
+		}
+		newPath.addAll(graph.toNodeIds(repair));
+		return removeLoops(newPath);
+	}
+	
+	// keeps the paths of the set still present in the graph
+	private static void dropBrokenPaths(CompactGraph graph, JsonObject route, String key) {
+		if (!route.containsKey(key)) {
+			return;
+		}
+		JsonArray kept = new JsonArray();
+		for (Object path : route.getJsonArray(key)) {
+			if (firstBrokenHop(graph, (JsonArray) path) < 0) {
+				kept.add(path);
+			}
+		}
+		route.put(key, kept);
+	}
+	
+	// index of the first hop of the path missing from the graph, -1 if none
+	private static int firstBrokenHop(CompactGraph graph, JsonArray path) {
+		for (int i = 0; i < path.size(); i++) {
+			int u = graph.indexOf(path.getString(i));
+			if (u < 0) {
+				return Math.max(i - 1, 0);
+			}
+			if (i + 1 < path.size()) {
+				int v = graph.indexOf(path.getString(i + 1));
+				boolean linked = false;
+				for (int e = graph.firstEdge(u); (e < graph.endEdge(u)) && !linked; e++) {
+					linked = (graph.target(e) == v);
+				}
+				if (!linked) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	// drops the cycles of a node path, keeping the first visit of each node
+	private static List<String> removeLoops(List<String> path) {
+		List<String> result = new ArrayList<String>();
+		HashMap<String, Integer> position = new HashMap<String, Integer>();
+		for (String node : path) {
+			Integer seen = position.get(node);
+			if (seen != null) {
+				for (int i = seen + 1; i < result.size(); i++) {
+					position.remove(result.get(i));
+				}
+				result.subList(seen + 1, result.size()).clear();
+			} else {
+				position.put(node, result.size());
+				result.add(node);
+			}
+		}
+		return result;
+	}
+	
 	@Override
 	protected void setServiceApi() {
 		eb.consumer(serviceName, message -> {
@@ -168,12 +763,31 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 			case "get_reg_pref":
 				getRegPref(nmsEbMsg);
 				break;
+			case "lookup_prefix":
+				lookupPrefix(nmsEbMsg);
+				break;
 			case "get_all_routes":
 				getAllRoutes(nmsEbMsg);
 				break;
 			case "get_route":
 				getRoute(nmsEbMsg);
 				break;
+			case "get_routes_snapshot":
+				getRoutesSnapshot(nmsEbMsg);
+				break;
+			case "get_prefixes_snapshot":
+				getPrefixesSnapshot(nmsEbMsg);
+				break;
+				
+			case "get_reachability":
+				getReachability(nmsEbMsg);
+				break;
+			case "get_path_matrix":
+				getPathMatrix(nmsEbMsg);
+				break;
+			case "get_all_pairs_paths":
+				getAllPairsPaths(nmsEbMsg);
+				break;
 				
 			case "add_reg_pref":
 				addRegPref(nmsEbMsg);
@@ -184,6 +798,9 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 			case "add_auto_route":
 				addAutoRoute(nmsEbMsg);
 				break;
+			case "add_auto_routes":
+				addAutoRoutes(nmsEbMsg);
+				break;
 				
 			case "del_reg_pref":
 				deleteRegPref(nmsEbMsg);
@@ -209,6 +826,22 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 		}
 	}
 	
+	@Override
+	protected JsonObject getServiceInfoContent() {
+		JsonObject content = super.getServiceInfoContent()
+			.put("topologyVersion", topology.get().getVersion())
+			.put("sptCache", sptCache.getStats())
+			.put("routes", routeTable.isLoaded() ? routeTable.size() : -1)
+			.put("prefixes", prefixTrie.isLoaded() ? prefixTrie.size() : -1);
+		if (hierarchyEnabled) {
+			content.put("hierarchy", hierarchyStats.copy()
+				.put("ready", topology.get().getHierarchy(RouteMetric.HOP_COUNT) != null)
+				.put("queries", hierarchyQueries)
+				.put("avgQueryUs", (hierarchyQueries == 0) ? 0 : hierarchyQueryNanos / hierarchyQueries / 1000.0));
+		}
+		return content;
+	}
+	
 	/*---------- topology service processing ---------*/
 	protected void getRoutingCapabilities(Future<List<Capability>> future) {
 		List<Capability> newCaps = new ArrayList<Capability>();
@@ -316,7 +949,63 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 		});
 	}
 	
+	/*
+	 * Longest registered prefix of a name and its owning nodes:
+	 * {"name": "/a/b/c"} -> {name, prefix, nodes, prefixes}
+	 */
+	protected void lookupPrefix(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		if (params.getString("name","").isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "name missing");
+			message.reply(response);
+			return;
+		}
+		if (!prefixTrie.isLoaded()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "prefixes not loaded");
+			message.reply(response);
+			return;
+		}
+		List<JsonObject> prefixes = prefixTrie.lookup(params.getString("name"));
+		if (prefixes.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "no matching prefix");
+			message.reply(response);
+			return;
+		}
+		JsonArray nodes = new JsonArray();
+		for (JsonObject prefix : prefixes) {
+			if (!nodes.contains(prefix.getString("node"))) {
+				nodes.add(prefix.getString("node"));
+			}
+		}
+		JsonObject response = new JsonObject();
+		response.put("service", serviceName);
+		response.put("action", message.getAction());
+		response.put("content", new JsonObject()
+				.put("name", params.getString("name"))
+				.put("prefix", prefixes.get(0).getString("name"))
+				.put("nodes", nodes)
+				.put("prefixes", new JsonArray(new ArrayList<Object>(prefixes))));
+		message.reply(response);
+	}
+	
 	protected void getAllRoutes(NmsEbMessage message) {
+		if (routeTable.isLoaded()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", new JsonObject().put("docs", routeTable.getAll()));
+			message.reply(response);
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_all_routes")
 			.put("params", new JsonObject());
@@ -347,6 +1036,15 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 			message.reply(response);
 			return;
 		}
+		if (routeTable.isLoaded()) {
+			JsonObject route = routeTable.get(params.getString("_id"));
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", (route == null) ? new JsonObject() : route);
+			message.reply(response);
+			return;
+		}
 		
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_route")
@@ -396,6 +1094,7 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 				JsonObject nodeResp = (JsonObject)reply1.result().body();
 				if (nodeResp.containsKey("content")) {
 					if (!nodeResp.getJsonObject("content").isEmpty()) {
+						params.put("_id", params.getString("_id", newId()));
 						params.put("status", "pending");
 						
 						JsonObject addPrefMsg = new JsonObject()
@@ -404,11 +1103,12 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 
 						eb.send("nms.storage", addPrefMsg, reply -> {
 							if (reply.succeeded()) {
+								prefixTrie.put(params);
 								JsonObject response = (JsonObject)reply.result().body();
 								response.put("service", serviceName);
 								response.put("action", message.getAction());
 								message.reply(response);
-								publishUpdatedPrefixes();
+								publishPrefixDelta("add", new JsonArray().add(params));
 							} else {
 								JsonObject response = new JsonObject();
 								response.put("service", serviceName);
@@ -532,6 +1232,7 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 				response.put("error", ar.cause().getMessage());
 				message.reply(response);
 			} else {
+				params.put("_id", params.getString("_id", newId()));
 				params.put("status", "pending");
 				JsonObject addRouteMsg = new JsonObject()
 						.put("action", "add_route")
@@ -539,11 +1240,12 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 
 				eb.send("nms.storage", addRouteMsg, reply -> {
 					if (reply.succeeded()) {
+						routeTable.put(params);
 						JsonObject response = (JsonObject)reply.result().body();
 						response.put("service", serviceName);
 						response.put("action", message.getAction());
 						message.reply(response);
-						publishUpdatedRoutes();
+						publishRouteDelta("add", new JsonArray().add(params));
 					} else {
 						JsonObject response = new JsonObject();
 						response.put("service", serviceName);
@@ -582,7 +1284,7 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 			message.reply(response);
 			return;
 		}		
-		if (!topology.isSet()) {
+		if (!topology.get().isSet()) {
 			JsonObject response = new JsonObject();
 			response.put("service", serviceName);
 			response.put("action", message.getAction());
@@ -590,17 +1292,109 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 			message.reply(response);
 			return;
 		}
-		
-		// check prefix existence
-		Future<Void> getPrefFut = Future.future();
-		JsonObject getPrefMsg = new JsonObject()
-				.put("action", "get_prefix")
-				.put("params", new JsonObject().put("_id", params.getString("prefix")));
-		eb.send("nms.storage", getPrefMsg, rep -> {
-			if (rep.succeeded()) {
-				JsonObject getPrefResp = (JsonObject)rep.result().body();
-				if (getPrefResp.containsKey("content")) {
-					if (!getPrefResp.getJsonObject("content").isEmpty()) {
+		// unroutable pairs are rejected before any storage query
+		String reachError = checkReachability(topology.get(), 
+				params.getString("fromNode"), params.getString("targetNode"));
+		if (reachError != null) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", reachError);
+			message.reply(response);
+			return;
+		}
+		final RouteMetric metric;
+		try {
+			metric = RouteMetric.fromJson(params.getValue("metric"));
+		} catch (IllegalArgumentException e) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", e.getMessage());
+			message.reply(response);
+			return;
+		}
+		// number of paths (primary and backups), optionally link-disjoint
+		int pathNbr = params.getInteger("paths", 1);
+		boolean disjoint = params.getBoolean("disjoint", false);
+		if ((pathNbr < 1) || (pathNbr > MAX_PATHS)) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "paths must be between 1 and " + MAX_PATHS);
+			message.reply(response);
+			return;
+		}
+		// equal-cost multipath: every shortest path up to maxPaths
+		boolean ecmp = params.getBoolean("ecmp", false);
+		int ecmpPathNbr = params.getInteger("maxPaths", ecmpMaxPaths);
+		if (ecmp && ((pathNbr > 1) || disjoint)) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "ecmp cannot be combined with paths or disjoint");
+			message.reply(response);
+			return;
+		}
+		if (ecmp && ((ecmpPathNbr < 1) || (ecmpPathNbr > ecmpMaxPaths))) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "maxPaths must be between 1 and " + ecmpMaxPaths);
+			message.reply(response);
+			return;
+		}
+		// excluded nodes and links, minimum capacity
+		final PathConstraints constraints;
+		try {
+			constraints = PathConstraints.fromJson(topology.get().getGraph(), params);
+		} catch (IllegalArgumentException | ClassCastException e) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "invalid constraints: " + e.getMessage());
+			message.reply(response);
+			return;
+		}
+		if ((constraints != null) && ecmp) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "ecmp cannot be combined with exclude or minCapacity");
+			message.reply(response);
+			return;
+		}
+		if ((constraints != null) && (isExcluded(constraints, params.getString("fromNode")) 
+				|| isExcluded(constraints, params.getString("targetNode")))) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "fromNode or targetNode is excluded");
+			message.reply(response);
+			return;
+		}
+		String search = params.getString("search", hierarchyEnabled ? SEARCH_CH : SEARCH_TREE);
+		if (!search.equals(SEARCH_TREE) && !search.equals(SEARCH_BIDIRECTIONAL) 
+				&& !(search.equals(SEARCH_ALT) && (landmarkNbr > 0))
+				&& !(search.equals(SEARCH_CH) && hierarchyEnabled)) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "unknown search: " + search);
+			message.reply(response);
+			return;
+		}
+		
+		// check prefix existence
+		Future<Void> getPrefFut = Future.future();
+		JsonObject getPrefMsg = new JsonObject()
+				.put("action", "get_prefix")
+				.put("params", new JsonObject().put("_id", params.getString("prefix")));
+		eb.send("nms.storage", getPrefMsg, rep -> {
+			if (rep.succeeded()) {
+				JsonObject getPrefResp = (JsonObject)rep.result().body();
+				if (getPrefResp.containsKey("content")) {
+					if (!getPrefResp.getJsonObject("content").isEmpty()) {
 						getPrefFut.complete();
 					} else {
 						getPrefFut.fail("prefix does not exist");
@@ -650,12 +1444,20 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 				message.reply(response);
 			} else {
 				/* compute shortest path */
-				String sourceId = params.getString("fromNode");
-				String targetId = params.getString("targetNode");
-				DijkstraAlgorithm dja = new DijkstraAlgorithm(topology);
-				JsonArray path = new JsonArray(dja.getShortestPathById(sourceId, targetId));
+				List<String> path = computeAutoRoute(topology.get(), params, metric, constraints, search);
+				if (path == null) {
+					JsonObject response = new JsonObject();
+					response.put("service", serviceName);
+					response.put("action", message.getAction());
+					response.put("error", "no path between fromNode and targetNode");
+					message.reply(response);
+					return;
+				}
+				// auto routes are recomputed on topology changes
+				params.put("_id", params.getString("_id", newId()));
+				params.put("auto", true);
 				params.put("status", "pending");
-				params.put("path", path);
+				params.put("path", new JsonArray(path));
 				
 				JsonObject addRouteMsg = new JsonObject()
 						.put("action", "add_route")
@@ -663,11 +1465,12 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 
 				eb.send("nms.storage", addRouteMsg, reply -> {
 					if (reply.succeeded()) {
+						routeTable.put(params);
 						JsonObject response = (JsonObject)reply.result().body();
 						response.put("service", serviceName);
 						response.put("action", message.getAction());
 						message.reply(response);
-						publishUpdatedRoutes();
+						publishRouteDelta("add", new JsonArray().add(params));
 					} else {
 						JsonObject response = new JsonObject();
 						response.put("service", serviceName);
@@ -680,6 +1483,605 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 		});
 	}
 	
+	/*
+	 * Batch of automatic routes: {"routes": [{prefix, fromNode, targetNode, metric}], "metric": ...}
+	 * Nodes are checked against the topology snapshot, prefixes with one storage query,
+	 * one shortest path tree is computed per (fromNode, metric) and the routes
+	 * are stored with one write (one per item without storage batch actions).
+	 * Invalid items are reported by index.
+	 */
+	protected void addAutoRoutes(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		JsonArray items = params.getJsonArray("routes", new JsonArray());
+		if (items.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "routes missing");
+			message.reply(response);
+			return;
+		}
+		TopologySnapshot snapshot = topology.get();
+		if (!snapshot.isSet()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "Automatic path option is not available");
+			message.reply(response);
+			return;
+		}
+		
+		// check items locally
+		JsonArray errors = new JsonArray();
+		List<JsonObject> routes = new ArrayList<JsonObject>();
+		List<Integer> indexes = new ArrayList<Integer>();
+		List<RouteMetric> metrics = new ArrayList<RouteMetric>();
+		JsonArray prefixes = new JsonArray();
+		for (int i = 0; i < items.size(); i++) {
+			JsonObject item = items.getJsonObject(i);
+			String error = null;
+			RouteMetric metric = null;
+			if (item.getString("prefix","").isEmpty()) {
+				error = "prefix missing";
+			} else if (item.getString("targetNode","").isEmpty()) {
+				error = "targetNode missing";
+			} else if (item.getString("fromNode","").isEmpty()) {
+				error = "fromNode missing";
+			} else {
+				error = checkReachability(snapshot, item.getString("fromNode"), item.getString("targetNode"));
+			}
+			if (error == null) {
+				try {
+					metric = RouteMetric.fromJson(item.containsKey("metric") 
+							? item.getValue("metric") : params.getValue("metric"));
+				} catch (IllegalArgumentException e) {
+					error = e.getMessage();
+				}
+			}
+			if (error != null) {
+				errors.add(new JsonObject().put("index", i).put("error", error));
+				continue;
+			}
+			routes.add(item.copy());
+			indexes.add(i);
+			metrics.add(metric);
+			if (!prefixes.contains(item.getString("prefix"))) {
+				prefixes.add(item.getString("prefix"));
+			}
+		}
+		if (routes.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "no valid route");
+			response.put("errors", errors);
+			message.reply(response);
+			return;
+		}
+		
+		// check prefixes existence
+		sendStorageBatch("get_prefixes", "prefixes", prefixes, 
+				"get_prefix", prefix -> new JsonObject().put("_id", prefix), rep -> {
+			if (rep.failed()) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", rep.cause().getMessage());
+				message.reply(response);
+				return;
+			}
+			JsonObject getPrefsResp = rep.result();
+			if (!getPrefsResp.containsKey("content")) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", getPrefsResp.getString("error"));
+				message.reply(response);
+				return;
+			}
+			Set<String> known = new HashSet<String>();
+			getPrefsResp.getJsonObject("content").getJsonArray("docs", new JsonArray()).forEach(doc -> {
+				known.add(((JsonObject)doc).getString("_id"));
+			});
+			
+			// one tree per (fromNode, metric), shared by the routes of the group
+			LinkedHashMap<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+			for (int i = 0; i < routes.size(); i++) {
+				String group = routes.get(i).getString("fromNode") + "|" + metrics.get(i).getKey();
+				groups.computeIfAbsent(group, k -> new ArrayList<Integer>()).add(i);
+			}
+			TopologySnapshot current = topology.get();
+			JsonArray toAdd = new JsonArray();
+			for (List<Integer> group : groups.values()) {
+				int first = group.get(0);
+				ShortestPathTree tree = sptCache.getTree(current, routes.get(first).getString("fromNode"), 
+						metrics.get(first));
+				for (int i : group) {
+					JsonObject route = routes.get(i);
+					String error = null;
+					List<String> path = null;
+					if (!known.contains(route.getString("prefix"))) {
+						error = "prefix does not exist";
+					} else {
+						path = (tree == null) ? null : tree.getPathById(route.getString("targetNode"));
+						if (path == null) {
+							error = "no path between fromNode and targetNode";
+						}
+					}
+					if (error != null) {
+						errors.add(new JsonObject().put("index", indexes.get(i)).put("error", error));
+						continue;
+					}
+					route.put("_id", route.getString("_id", newId()));
+					route.put("auto", true);
+					route.put("status", "pending");
+					route.put("path", new JsonArray(path));
+					toAdd.add(route);
+				}
+			}
+			if (toAdd.isEmpty()) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", "no valid route");
+				response.put("errors", errors);
+				message.reply(response);
+				return;
+			}
+			
+			// add routes
+			sendStorageBatch("add_routes", "routes", toAdd, "add_route", route -> (JsonObject) route, reply -> {
+				if (reply.succeeded()) {
+					toAdd.forEach(route -> routeTable.put((JsonObject) route));
+					JsonObject response = reply.result();
+					response.put("service", serviceName);
+					response.put("action", message.getAction());
+					response.put("errors", errors);
+					message.reply(response);
+					publishRouteDelta("add", toAdd);
+				} else {
+					JsonObject response = new JsonObject();
+					response.put("service", serviceName);
+					response.put("action", message.getAction());
+					response.put("error", reply.cause().getMessage());
+					response.put("errors", errors);
+					message.reply(response);
+				}
+			});
+		});
+	}
+	
+	/*
+	 * Shortest paths between all node pairs of the current topology, replied
+	 * by rows: the rows of the given "sources", or a page of "limit" rows from
+	 * "offset" over all nodes, "next" being the offset of the following page.
+	 * Columns follow "nodes"; a predecessor is the column of the node before
+	 * the target on the path from the row node, -1 if none.
+	 */
+	protected void getAllPairsPaths(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		TopologySnapshot snapshot = topology.get();
+		if (!snapshot.isSet()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "topology not available");
+			message.reply(response);
+			return;
+		}
+		if (snapshot.getGraph().liveNodeCount() > allPairsMaxNodes) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "topology exceeds " + allPairsMaxNodes + " nodes");
+			message.reply(response);
+			return;
+		}
+		final RouteMetric metric;
+		try {
+			metric = RouteMetric.fromJson(params.getValue("metric"));
+		} catch (IllegalArgumentException e) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", e.getMessage());
+			message.reply(response);
+			return;
+		}
+		int offset = params.getInteger("offset", 0);
+		int limit = params.getInteger("limit", ALL_PAIRS_MAX_ROWS);
+		JsonArray unknown = new JsonArray();
+		JsonArray sources = new JsonArray();
+		int[] sourceIdx = params.containsKey("sources") 
+				? toNodeIndexes(snapshot.getGraph(), params.getJsonArray("sources"), sources, unknown) : null;
+		if ((offset < 0) || (limit <= 0) || (limit > ALL_PAIRS_MAX_ROWS) 
+				|| ((sourceIdx != null) && (sourceIdx.length > ALL_PAIRS_MAX_ROWS))) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "at most " + ALL_PAIRS_MAX_ROWS + " rows per request");
+			message.reply(response);
+			return;
+		}
+		
+		// the searches run on the pool, off the event loop
+		vertx.<JsonObject>executeBlocking(promise -> {
+			long start = System.nanoTime();
+			AllPairsPaths paths = snapshot.getAllPairsPaths(metric, pathPool);
+			long durationMs = (System.nanoTime() - start) / 1000000;
+			
+			CompactGraph graph = snapshot.getGraph();
+			int[] columns = new int[graph.nodeCount()];
+			List<Integer> live = new ArrayList<Integer>();
+			JsonArray nodes = new JsonArray();
+			for (int u = 0; u < graph.nodeCount(); u++) {
+				columns[u] = -1;
+				if (graph.containsNode(u)) {
+					columns[u] = live.size();
+					live.add(u);
+					nodes.add(graph.nodeId(u));
+				}
+			}
+			List<Integer> rows = new ArrayList<Integer>();
+			JsonObject content = new JsonObject();
+			if (sourceIdx != null) {
+				for (int s : sourceIdx) {
+					rows.add(s);
+				}
+				content.put("sources", sources).put("unknown", unknown);
+			} else {
+				rows.addAll(live.subList(Math.min(offset, live.size()), Math.min(offset + limit, live.size())));
+				JsonArray rowIds = new JsonArray();
+				rows.forEach(s -> rowIds.add(graph.nodeId(s)));
+				content.put("sources", rowIds).put("offset", offset);
+				if (offset + limit < live.size()) {
+					content.put("next", offset + limit);
+				}
+			}
+			JsonArray distances = new JsonArray();
+			JsonArray predecessors = new JsonArray();
+			for (int s : rows) {
+				JsonArray dRow = new JsonArray();
+				JsonArray pRow = new JsonArray();
+				for (int t : live) {
+					int edge = paths.getPredecessorEdge(s, t);
+					if (paths.isReachable(s, t)) {
+						dRow.add(paths.getDistance(s, t));
+					} else {
+						dRow.addNull();
+					}
+					pRow.add((edge < 0) ? -1 : columns[graph.source(edge)]);
+				}
+				distances.add(dRow);
+				predecessors.add(pRow);
+			}
+			promise.complete(content
+					.put("version", snapshot.getVersion())
+					.put("metric", metric.getKey())
+					.put("nodes", nodes)
+					.put("distances", distances)
+					.put("predecessors", predecessors)
+					.put("durationMs", durationMs)
+					.put("parallelism", pathPool.getParallelism()));
+		}, false, res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				response.put("content", res.result());
+			} else {
+				response.put("error", res.cause().getMessage());
+			}
+			message.reply(response);
+		});
+	}
+	
+	/*
+	 * Read-only distances between lists of sources and targets over the
+	 * current topology, with the paths if "paths" is true.
+	 * Duplicates are searched once and unknown nodes are reported apart.
+	 */
+	protected void getPathMatrix(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		JsonArray sourceIds = params.getJsonArray("sources", new JsonArray());
+		JsonArray targetIds = params.getJsonArray("targets", new JsonArray());
+		if (sourceIds.isEmpty() || targetIds.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "sources or targets missing");
+			message.reply(response);
+			return;
+		}
+		TopologySnapshot snapshot = topology.get();
+		if (!snapshot.isSet()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "topology not available");
+			message.reply(response);
+			return;
+		}
+		final RouteMetric metric;
+		try {
+			metric = RouteMetric.fromJson(params.getValue("metric"));
+		} catch (IllegalArgumentException e) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", e.getMessage());
+			message.reply(response);
+			return;
+		}
+		boolean withPaths = params.getBoolean("paths", false);
+		
+		CompactGraph graph = snapshot.getGraph();
+		JsonArray unknown = new JsonArray();
+		JsonArray sources = new JsonArray();
+		JsonArray targets = new JsonArray();
+		int[] sourceIdx = toNodeIndexes(graph, sourceIds, sources, unknown);
+		int[] targetIdx = toNodeIndexes(graph, targetIds, targets, unknown);
+		if ((sourceIdx.length > MATRIX_MAX_NODES) || (targetIdx.length > MATRIX_MAX_NODES)) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "at most " + MATRIX_MAX_NODES + " sources and targets");
+			message.reply(response);
+			return;
+		}
+		
+		vertx.<JsonObject>executeBlocking(promise -> {
+			PathMatrix matrix = PathMatrix.compute(graph, metric, sourceIdx, targetIdx, withPaths);
+			JsonArray distances = new JsonArray();
+			JsonArray paths = new JsonArray();
+			for (int i = 0; i < sourceIdx.length; i++) {
+				JsonArray dRow = new JsonArray();
+				JsonArray pRow = new JsonArray();
+				for (int j = 0; j < targetIdx.length; j++) {
+					double d = matrix.getDistance(i, j);
+					int[] path = matrix.getPath(i, j);
+					if (Double.isInfinite(d)) {
+						dRow.addNull();
+					} else {
+						dRow.add(d);
+					}
+					if (path == null) {
+						pRow.addNull();
+					} else {
+						pRow.add(new JsonArray(graph.toNodeIds(path)));
+					}
+				}
+				distances.add(dRow);
+				paths.add(pRow);
+			}
+			JsonObject content = new JsonObject()
+					.put("version", snapshot.getVersion())
+					.put("metric", metric.getKey())
+					.put("sources", sources)
+					.put("targets", targets)
+					.put("distances", distances)
+					.put("unknown", unknown);
+			if (withPaths) {
+				content.put("paths", paths);
+			}
+			LOG.info("[" + serviceName + "] path matrix settled " + matrix.getSettledCount() + " nodes"
+					+ (matrix.isReverse() ? " (reverse)" : ""));
+			promise.complete(content);
+		}, false, res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				response.put("content", res.result());
+			} else {
+				response.put("error", res.cause().getMessage());
+			}
+			message.reply(response);
+		});
+	}
+	
+	// distinct indexes of the known ids, in order; unknown ids are added to "unknown"
+	private int[] toNodeIndexes(CompactGraph graph, JsonArray ids, JsonArray known, JsonArray unknown) {
+		Set<String> seen = new HashSet<String>();
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < ids.size(); i++) {
+			String id = String.valueOf(ids.getValue(i));
+			if (!seen.add(id)) {
+				continue;
+			}
+			int u = graph.indexOf(id);
+			if (u < 0) {
+				if (!unknown.contains(id)) {
+					unknown.add(id);
+				}
+			} else {
+				indexes.add(u);
+				known.add(id);
+			}
+		}
+		int[] result = new int[indexes.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = indexes.get(i);
+		}
+		return result;
+	}
+	
+	/*
+	 * Primary path of an auto route with its options, NULL if none;
+	 * equal-cost or backup paths are put in the route
+	 */
+	private List<String> computeAutoRoute(TopologySnapshot snapshot, JsonObject route, RouteMetric metric, 
+			PathConstraints constraints, String search) {
+		String sourceId = route.getString("fromNode");
+		String targetId = route.getString("targetNode");
+		int pathNbr = route.getInteger("paths", 1);
+		boolean disjoint = route.getBoolean("disjoint", false);
+		if (route.getBoolean("ecmp", false)) {
+			// the equal-cost set includes the primary path
+			List<List<String>> ecmpPaths = computeEqualCostPaths(snapshot, sourceId, targetId, 
+					metric, route.getInteger("maxPaths", ecmpMaxPaths));
+			if (ecmpPaths.isEmpty()) {
+				return null;
+			}
+			JsonArray jEcmpPaths = new JsonArray();
+			for (List<String> p : ecmpPaths) {
+				jEcmpPaths.add(new JsonArray(p));
+			}
+			route.put("ecmpPaths", jEcmpPaths);
+			return ecmpPaths.get(0);
+		}
+		if ((pathNbr == 1) && !disjoint && (constraints == null)) {
+			return computePath(snapshot, sourceId, targetId, metric, search);
+		}
+		// primary path first, the others are kept as backups;
+		// constraints are searched over the graph they were read from
+		CompactGraph graph = (constraints == null) ? snapshot.getGraph() : constraints.getGraph();
+		List<GraphPath> paths = new KShortestPaths(graph, metric, constraints)
+				.getShortestPaths(sourceId, targetId, pathNbr, disjoint);
+		if (paths.isEmpty()) {
+			return null;
+		}
+		JsonArray backupPaths = new JsonArray();
+		for (int i = 1; i < paths.size(); i++) {
+			backupPaths.add(new JsonArray(paths.get(i).toNodeIds(graph)));
+		}
+		route.put("backupPaths", backupPaths);
+		return paths.get(0).toNodeIds(graph);
+	}
+	
+	private boolean isExcluded(PathConstraints constraints, String nodeId) {
+		int u = constraints.getGraph().indexOf(nodeId);
+		return (u >= 0) && !constraints.allowsNode(u);
+	}
+	
+	// equal-cost shortest paths from the cached tree of the source, empty if none
+	private List<List<String>> computeEqualCostPaths(TopologySnapshot snapshot, String sourceId, 
+			String targetId, RouteMetric metric, int maxPaths) {
+		List<List<String>> paths = new ArrayList<List<String>>();
+		CompactGraph graph = snapshot.getGraph();
+		ShortestPathTree tree = sptCache.getTree(snapshot, sourceId, metric);
+		int target = graph.indexOf(targetId);
+		if ((tree == null) || (target < 0)) {
+			return paths;
+		}
+		EqualCostPaths ecmp = EqualCostPaths.of(tree, metric, target);
+		if (ecmp != null) {
+			for (GraphPath path : ecmp.getPaths(maxPaths)) {
+				paths.add(path.toNodeIds(graph));
+			}
+		}
+		return paths;
+	}
+	
+	// error message if the nodes are unknown or not connected, NULL otherwise
+	private String checkReachability(TopologySnapshot snapshot, String sourceId, String targetId) {
+		CompactGraph graph = snapshot.getGraph();
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
+		if ((source < 0) || (target < 0)) {
+			return "targetNode or fromNode does not exist";
+		}
+		if (!snapshot.getReachability().isReachable(source, target)) {
+			return "no path between fromNode and targetNode";
+		}
+		return null;
+	}
+	
+	/*
+	 * Reachability between fromNode and targetNode if given,
+	 * component counts of the current topology otherwise
+	 */
+	protected void getReachability(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		TopologySnapshot snapshot = topology.get();
+		ReachabilityIndex index = snapshot.getReachability();
+		JsonObject content = new JsonObject()
+				.put("version", snapshot.getVersion())
+				.put("weakComponents", index.getWeakCount())
+				.put("strongComponents", index.getStrongCount());
+		if (params.containsKey("fromNode") || params.containsKey("targetNode")) {
+			CompactGraph graph = snapshot.getGraph();
+			int source = graph.indexOf(params.getString("fromNode", ""));
+			int target = graph.indexOf(params.getString("targetNode", ""));
+			if ((source < 0) || (target < 0)) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", "targetNode or fromNode does not exist");
+				message.reply(response);
+				return;
+			}
+			content.put("fromNode", params.getString("fromNode"))
+				.put("targetNode", params.getString("targetNode"))
+				.put("reachable", index.isReachable(source, target))
+				.put("connected", index.isConnected(source, target))
+				.put("stronglyConnected", index.isStronglyConnected(source, target));
+		}
+		JsonObject response = new JsonObject();
+		response.put("service", serviceName);
+		response.put("action", message.getAction());
+		response.put("content", content);
+		message.reply(response);
+	}
+	
+	// single shortest path with the requested search, NULL if none
+	private List<String> computePath(TopologySnapshot snapshot, String sourceId, String targetId, 
+			RouteMetric metric, String search) {
+		CompactGraph graph = snapshot.getGraph();
+		ContractionHierarchy ch = search.equals(SEARCH_CH) ? snapshot.getHierarchy(metric) : null;
+		if (ch != null) {
+			int source = graph.indexOf(sourceId);
+			int target = graph.indexOf(targetId);
+			if ((source < 0) || (target < 0)) {
+				return null;
+			}
+			long start = System.nanoTime();
+			GraphPath path = ch.getShortestPath(source, target, hierarchyWorkspace);
+			hierarchyQueryNanos += System.nanoTime() - start;
+			hierarchyQueries++;
+			return (path == null) ? null : path.toNodeIds(graph);
+		}
+		// plain search while the hierarchy is not ready
+		if (search.equals(SEARCH_TREE) || search.equals(SEARCH_CH)) {
+			ShortestPathTree tree = sptCache.getTree(snapshot, sourceId, metric);
+			return (tree == null) ? null : tree.getPathById(targetId);
+		}
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
+		if ((source < 0) || (target < 0)) {
+			return null;
+		}
+		PointToPointSearch p2p = new PointToPointSearch(graph, metric);
+		// bidirectional search while the landmarks are not ready
+		LandmarkIndex landmarks = search.equals(SEARCH_ALT) ? snapshot.getLandmarksIfReady(metric) : null;
+		if (search.equals(SEARCH_ALT) && (landmarks == null)) {
+			buildLandmarks(snapshot, metric);
+		}
+		GraphPath path = (landmarks != null)
+				? p2p.astar(source, target, landmarks)
+				: p2p.bidirectional(source, target);
+		return (path == null) ? null : path.toNodeIds(graph);
+	}
+	
+	/*
+	 * Builds the landmarks of a metric for the snapshot in the background,
+	 * one build per metric at a time
+	 */
+	private void buildLandmarks(TopologySnapshot snapshot, RouteMetric metric) {
+		if (!landmarksBuilding.add(metric)) {
+			return;
+		}
+		vertx.<Void>executeBlocking(promise -> {
+			snapshot.getLandmarks(metric, landmarkNbr);
+			promise.complete();
+		}, false, res -> {
+			landmarksBuilding.remove(metric);
+			if (res.failed()) {
+				LOG.warn("[" + serviceName + "] landmarks not computed", res.cause());
+			}
+		});
+	}
+	
 	protected void deleteRegPref(NmsEbMessage message) {
 		JsonObject params = message.getParams();
 		if (params.getString("_id","").isEmpty()) {
@@ -701,7 +2103,9 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
 				message.reply(response);
-				publishUpdatedPrefixes();
+				prefixTrie.remove(params.getString("_id"));
+				publishPrefixDelta("delete", new JsonArray()
+						.add(new JsonObject().put("_id", params.getString("_id"))));
 				
 				// delete corresp routes
 				JsonObject toStorageMsg2 = new JsonObject()
@@ -709,8 +2113,8 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 						.put("params", new JsonObject().put("id", params.getString("_id")));
 
 				eb.send("nms.storage", toStorageMsg2, reply2 -> {
-					if (reply2.succeeded()) {						
-						publishUpdatedRoutes();						
+					if (reply2.succeeded()) {
+						publishRouteDeletion(routeTable.removeByPrefix(params.getString("_id")));
 					}
 				});
 			} else {
@@ -771,11 +2175,13 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
+				routeTable.remove(params.getString("_id"));
 				JsonObject response = (JsonObject)reply.result().body();
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
 				message.reply(response);
-				publishUpdatedRoutes();
+				publishRouteDelta("delete", new JsonArray()
+						.add(new JsonObject().put("_id", params.getString("_id"))));
 			} else {
 				JsonObject response = new JsonObject();
 				response.put("service", serviceName);
@@ -786,49 +2192,176 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 		});
 	}
 	
-	private void publishUpdatedPrefixes() {
+	/*
+	 * Route changes are published on nms.info.routing.routes as
+	 * {seq, op, docs}, op being add, update, delete or snapshot; deleted
+	 * docs only carry their _id. A client missing a sequence number
+	 * resyncs with get_routes_snapshot. Prefixes follow the same scheme
+	 * on nms.info.routing.prefixes.
+	 */
+	private void publishRouteDelta(String op, JsonArray docs) {
+		if (docs.isEmpty()) {
+			return;
+		}
+		routeSeq++;
+		JsonObject ebPubMsg = new JsonObject()
+				.put("service", serviceName)
+				.put("content", new JsonObject()
+						.put("seq", routeSeq)
+						.put("op", op)
+						.put("docs", docs));
+		eb.publish("nms.info.routing.routes", ebPubMsg);
+		msgNbr++;
+	}
+	
+	// deleted routes come from the route table, a snapshot is sent if it is not loaded
+	private void publishRouteDeletion(List<JsonObject> removed) {
+		if (!routeTable.isLoaded()) {
+			publishRouteSnapshot();
+			return;
+		}
+		JsonArray docs = new JsonArray();
+		for (JsonObject route : removed) {
+			docs.add(new JsonObject().put("_id", route.getString("_id")));
+		}
+		publishRouteDelta("delete", docs);
+	}
+	
+	private void publishRouteSnapshot() {
+		getRoutesSnapshot(res -> {
+			if (res.succeeded()) {
+				routeSeq++;
+				JsonObject ebPubMsg = new JsonObject()
+						.put("service", serviceName)
+						.put("content", res.result()
+								.put("seq", routeSeq)
+								.put("op", "snapshot"));
+				eb.publish("nms.info.routing.routes", ebPubMsg);
+				msgNbr++;
+			} else {
+				LOG.error("Cannot get updated routes", res.cause().getMessage());
+			}
+		});
+	}
+	
+	private void publishPrefixDelta(String op, JsonArray docs) {
+		if (docs.isEmpty()) {
+			return;
+		}
+		prefixSeq++;
+		JsonObject ebPubMsg = new JsonObject()
+				.put("service", serviceName)
+				.put("content", new JsonObject()
+						.put("seq", prefixSeq)
+						.put("op", op)
+						.put("docs", docs));
+		eb.publish("nms.info.routing.prefixes", ebPubMsg);
+		msgNbr++;
+	}
+	
+	private void publishPrefixSnapshot() {
+		getPrefixesSnapshot(res -> {
+			if (res.succeeded()) {
+				prefixSeq++;
+				JsonObject ebPubMsg = new JsonObject()
+						.put("service", serviceName)
+						.put("content", res.result()
+								.put("seq", prefixSeq)
+								.put("op", "snapshot"));
+				eb.publish("nms.info.routing.prefixes", ebPubMsg);
+				msgNbr++;
+			} else {
+				LOG.error("Cannot get updated prefixes", res.cause().getMessage());
+			}
+		});
+	}
+	
+	/*
+	 * {seq, docs} with the routes, from the route table if loaded.
+	 * seq is the last delta already applied; later deltas may be
+	 * included too when read from storage, add and delete are idempotent.
+	 */
+	private void getRoutesSnapshot(Handler<AsyncResult<JsonObject>> handler) {
+		long seq = routeSeq;
+		if (routeTable.isLoaded()) {
+			handler.handle(Future.succeededFuture(new JsonObject()
+					.put("seq", seq)
+					.put("docs", routeTable.getAll())));
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
-				.put("action", "get_all_prefixes")
+				.put("action", "get_all_routes")
 				.put("params", new JsonObject());
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
-				JsonObject response = (JsonObject)reply.result().body();				
+				JsonObject response = (JsonObject)reply.result().body();
 				if (response.containsKey("content")) {
-					JsonObject ebPubMsg = new JsonObject()
-							.put("service", serviceName)
-							.put("content", response.getJsonObject("content"));
-					eb.publish("nms.info.routing.prefixes", ebPubMsg);
-					msgNbr++;
+					handler.handle(Future.succeededFuture(new JsonObject()
+							.put("seq", seq)
+							.put("docs", response.getJsonObject("content").getJsonArray("docs", new JsonArray()))));
 				} else {
-					LOG.error("Cannot get updated prefixes", response.getString("error"));
+					handler.handle(Future.failedFuture(response.getString("error")));
 				}
 			} else {
-				LOG.error("Cannot get updated prefixes", reply.cause().getMessage());
+				handler.handle(Future.failedFuture(reply.cause()));
 			}
 		});
 	}
 	
-	private void publishUpdatedRoutes() {
+	private void getPrefixesSnapshot(Handler<AsyncResult<JsonObject>> handler) {
+		long seq = prefixSeq;
+		if (prefixTrie.isLoaded()) {
+			handler.handle(Future.succeededFuture(new JsonObject()
+					.put("seq", seq)
+					.put("docs", prefixTrie.getAll())));
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
-				.put("action", "get_all_routes")
+				.put("action", "get_all_prefixes")
 				.put("params", new JsonObject());
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
-				JsonObject response = (JsonObject)reply.result().body();				
+				JsonObject response = (JsonObject)reply.result().body();
 				if (response.containsKey("content")) {
-					JsonObject ebPubMsg = new JsonObject()
-							.put("service", serviceName)
-							.put("content", response.getJsonObject("content"));
-					eb.publish("nms.info.routing.routes", ebPubMsg);
-					msgNbr++;
+					handler.handle(Future.succeededFuture(new JsonObject()
+							.put("seq", seq)
+							.put("docs", response.getJsonObject("content").getJsonArray("docs", new JsonArray()))));
 				} else {
-					LOG.error("Cannot get updated routes", response.getString("error"));
+					handler.handle(Future.failedFuture(response.getString("error")));
 				}
 			} else {
-				LOG.error("Cannot get updated routes", reply.cause().getMessage());
+				handler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+	
+	protected void getRoutesSnapshot(NmsEbMessage message) {
+		getRoutesSnapshot(res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				response.put("content", res.result());
+			} else {
+				response.put("error", res.cause().getMessage());
+			}
+			message.reply(response);
+		});
+	}
+	
+	protected void getPrefixesSnapshot(NmsEbMessage message) {
+		getPrefixesSnapshot(res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				response.put("content", res.result());
+			} else {
+				response.put("error", res.cause().getMessage());
 			}
+			message.reply(response);
 		});
 	}
 	/*----------------------------------------------*/
@@ -836,6 +2369,9 @@ public class RoutingServiceVerticle extends AmqpVerticle {
 	@Override
 	public void stop(Future stopFuture) throws Exception {
 		LOG.info("Closing "+serviceName+" Service.");
+		if (pathPool != null) {
+			pathPool.shutdown();
+		}
 		super.stop(stopFuture);
 	}
 }
\ No newline at end of file
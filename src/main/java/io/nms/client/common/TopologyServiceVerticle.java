@@ -1,18 +1,24 @@
 package io.nms.client.common;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import io.nms.client.topology.TopologyModel;
 import io.nms.messages.Capability;
 import io.nms.messages.Message;
 import io.nms.messages.Receipt;
 import io.nms.messages.Result;
 import io.nms.messages.Specification;
 import io.nms.storage.NmsEbMessage;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
@@ -20,6 +26,11 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 	private static final int TOPO_UPDATE_PERIOD_MS = 10000;
 	private static final int RESET_PERIOD_S = 60;
 	private static final int SPEC_PERIOD_MS = 5000;
+	private static final int DELTA_LOG_SIZE = 10000;
+	private static final int PUBLISH_WINDOW_MS = 200;
+	private static final int PUBLISH_MAX_DELTAS = 1000;
+	private static final int PAGE_SIZE = 500;
+	private static final int MAX_PAGE_SIZE = 10000;
 	
 	protected HashMap<String, Capability> knownCaps = new HashMap<String, Capability>();
 	protected Instant lastUpdate = Instant.now();
@@ -27,8 +38,35 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 	//protected List<JsonObject> nodes = new ArrayList<JsonObject>();
 	//protected List<JsonObject> links = new ArrayList<JsonObject>();
 	
+	// write-through copy of the stored topology
+	protected final TopologyModel topologyModel = new TopologyModel();
+	
+	/*
+	 * Topology deltas are numbered from 1 within an epoch (the service
+	 * start time); the latest ones are kept for get_topology_since
+	 */
+	protected final long topologyEpoch = System.currentTimeMillis();
+	protected long topologySeq = 0;
+	protected int deltaLogSize = DELTA_LOG_SIZE;
+	protected final ArrayDeque<JsonObject> deltaLog = new ArrayDeque<JsonObject>();
+	
+	/*
+	 * Deltas are published at once when no publication took place during
+	 * the last window, otherwise merged until the window elapses or
+	 * publishMaxDeltas are pending; a window of 0 publishes each delta
+	 */
+	protected long publishWindowMs = PUBLISH_WINDOW_MS;
+	protected int publishMaxDeltas = PUBLISH_MAX_DELTAS;
+	protected JsonArray pendingDeltas = new JsonArray();
+	protected long publishTimer = -1;
+	protected long lastPublish = 0;
+	
 	public void start(Future<Void> fut) {
 		serviceName = "nms.topology";
+		JsonObject topologyConfig = config().getJsonObject("topology", new JsonObject());
+		deltaLogSize = topologyConfig.getInteger("deltaLogSize", DELTA_LOG_SIZE);
+		publishWindowMs = topologyConfig.getLong("publishWindowMs", (long) PUBLISH_WINDOW_MS);
+		publishMaxDeltas = topologyConfig.getInteger("publishMaxDeltas", PUBLISH_MAX_DELTAS);
 		Future<Void> futBase = Future.future(promise -> super.start(promise));
 		futBase.setHandler(res -> {
 			if (res.failed()) {
@@ -57,6 +95,7 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 						}
 					});
 				});*/
+				loadTopology();
 				fut.complete();
 			}
 		});
@@ -101,9 +140,21 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			case "del_link":
 				deleteLink(nmsEbMsg);
 				break;
+			case "add_nodes":
+				addNodes(nmsEbMsg);
+				break;
+			case "add_links":
+				addLinks(nmsEbMsg);
+				break;
+			case "del_links":
+				deleteLinks(nmsEbMsg);
+				break;
 			case "get_topology":
 				getTopology(nmsEbMsg);
 				break;
+			case "get_topology_since":
+				getTopologySince(nmsEbMsg);
+				break;
 			default:
 				replyUnknownAction(nmsEbMsg);
 			}
@@ -132,6 +183,35 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 		}
 	}
 	
+	// fills the topology model, storage is then only used for writes
+	private void loadTopology() {
+		JsonObject toStorageMsg = new JsonObject()
+				.put("action", "get_topology")
+				.put("params", new JsonObject());
+
+		eb.send("nms.storage", toStorageMsg, reply -> {
+			if (reply.succeeded()) {
+				JsonObject response = (JsonObject)reply.result().body();
+				if (response.containsKey("content")) {
+					topologyModel.load(response.getJsonObject("content"));
+					LOG.info("[" + serviceName + "] " + topologyModel.nodeCount() + " nodes and " 
+							+ topologyModel.linkCount() + " links loaded.");
+				} else {
+					LOG.error("Cannot load topology", response.getString("error"));
+				}
+			} else {
+				LOG.error("Cannot load topology", reply.cause().getMessage());
+			}
+		});
+	}
+	
+	@Override
+	protected JsonObject getServiceInfoContent() {
+		return super.getServiceInfoContent()
+			.put("nodes", topologyModel.isLoaded() ? topologyModel.nodeCount() : -1)
+			.put("links", topologyModel.isLoaded() ? topologyModel.linkCount() : -1);
+	}
+	
 	/*---------- topology service processing ---------*/
 	protected void getTopologyCapabilities(Future<List<Capability>> future) {
 		List<Capability> newCaps = new ArrayList<Capability>();
@@ -215,6 +295,7 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 		if (!params.containsKey("agent")) {
 			params.put("agent", "");
 		}
+		params.put("_id", params.getString("_id", newId()));
 		params.put("status", "pending");
 		
 		JsonObject toStorageMsg = new JsonObject()
@@ -223,11 +304,12 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
+				topologyModel.putNode(params);
 				JsonObject response = (JsonObject)reply.result().body();
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
 				message.reply(response);
-				publishUpdatedTopology();
+				publishTopologyDelta("add", "node", params);
 			} else {
 				JsonObject response = new JsonObject();
 				response.put("service", serviceName);
@@ -247,6 +329,15 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			message.reply(response);
 			return;
 		}
+		if (topologyModel.isLoaded()) {
+			JsonObject node = topologyModel.getNode(params.getString("_id"));
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", (node == null) ? new JsonObject() : node);
+			message.reply(response);
+			return;
+		}
 		
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_node")
@@ -278,6 +369,25 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			return;
 		}
 		
+		// link ends are checked against the topology model if loaded
+		if (topologyModel.isLoaded()) {
+			JsonObject source = topologyModel.resolveNode(params.getString("source"));
+			JsonObject target = topologyModel.resolveNode(params.getString("target"));
+			if ((source == null) || (target == null)) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", "specified nodes do not exist");
+				message.reply(response);
+				return;
+			}
+			// links refer to node Ids, whichever was given
+			params.put("source", source.getString("_id"));
+			params.put("target", target.getString("_id"));
+			storeLink(message, params);
+			return;
+		}
+		
 		JsonArray nodes = new JsonArray()
 				.add(params.getString("source"))
 				.add(params.getString("target"));
@@ -289,29 +399,14 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			if (reply1.succeeded()) {
 				JsonObject nodesResp = (JsonObject)reply1.result().body();
 				if (nodesResp.containsKey("content")) {
-					int d = nodesResp.getJsonObject("content").getJsonArray("docs").size();
-					if (d == 2) {
-						params.put("status", "pending");
-						
-						JsonObject addLinkMsg = new JsonObject()
-								.put("action", "add_link")
-								.put("params", params);
-
-						eb.send("nms.storage", addLinkMsg, reply -> {
-							if (reply.succeeded()) {
-								JsonObject response = (JsonObject)reply.result().body();
-								response.put("service", serviceName);
-								response.put("action", message.getAction());
-								message.reply(response);
-								publishUpdatedTopology();
-							} else {
-								JsonObject response = new JsonObject();
-								response.put("service", serviceName);
-								response.put("action", message.getAction());
-								response.put("error", reply.cause().getMessage());
-								message.reply(response);
-							}
-						});		
+					TopologyModel found = new TopologyModel();
+					found.load(new JsonObject().put("nodes", nodesResp.getJsonObject("content").getJsonArray("docs")));
+					JsonObject source = found.resolveNode(params.getString("source"));
+					JsonObject target = found.resolveNode(params.getString("target"));
+					if ((source != null) && (target != null)) {
+						params.put("source", source.getString("_id"));
+						params.put("target", target.getString("_id"));
+						storeLink(message, params);
 					} else {
 						JsonObject response = new JsonObject();
 						response.put("service", serviceName);
@@ -334,6 +429,31 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			}
 		});
 	}
+	private void storeLink(NmsEbMessage message, JsonObject params) {
+		params.put("_id", params.getString("_id", newId()));
+		params.put("status", "pending");
+		
+		JsonObject addLinkMsg = new JsonObject()
+				.put("action", "add_link")
+				.put("params", params);
+
+		eb.send("nms.storage", addLinkMsg, reply -> {
+			if (reply.succeeded()) {
+				topologyModel.putLink(params);
+				JsonObject response = (JsonObject)reply.result().body();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				message.reply(response);
+				publishTopologyDelta("add", "link", params);
+			} else {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", reply.cause().getMessage());
+				message.reply(response);
+			}
+		});
+	}
 	protected void getLink(NmsEbMessage message) {
 		JsonObject params = message.getParams();
 		if (params.getString("_id","").isEmpty()) {
@@ -344,6 +464,15 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			message.reply(response);
 			return;
 		}
+		if (topologyModel.isLoaded()) {
+			JsonObject link = topologyModel.getLink(params.getString("_id"));
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", (link == null) ? new JsonObject() : link);
+			message.reply(response);
+			return;
+		}
 		
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_link")
@@ -365,6 +494,18 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 		});		
 	}
 	protected void getAllNodes(NmsEbMessage message) {
+		if (message.getParams().containsKey("limit") || message.getParams().containsKey("stream")) {
+			getDocPages(message, "node");
+			return;
+		}
+		if (topologyModel.isLoaded()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", new JsonObject().put("docs", topologyModel.getNodes()));
+			message.reply(response);
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_all_nodes")
 			.put("params", new JsonObject());
@@ -385,6 +526,18 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 		});
 	}
 	protected void getAllLinks(NmsEbMessage message) {
+		if (message.getParams().containsKey("limit") || message.getParams().containsKey("stream")) {
+			getDocPages(message, "link");
+			return;
+		}
+		if (topologyModel.isLoaded()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", new JsonObject().put("docs", topologyModel.getLinks()));
+			message.reply(response);
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
 			.put("action", "get_all_links")
 			.put("params", new JsonObject());
@@ -404,6 +557,82 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 			}
 		});		
 	}
+	
+	/*
+	 * Paginated get_all_nodes / get_all_links: {"limit": n, "cursor": ""}
+	 * replies {"docs": [], "cursor": ""}, the cursor of the next page being
+	 * only set if more documents follow.
+	 * With {"stream": address} all pages are sent to the address as
+	 * {"docs": [], "chunk": i, "last": bool}, each one after the previous
+	 * was acknowledged by a reply; the request is then answered with
+	 * {"chunks": n, "count": m}.
+	 * Pages are served from the topology model only, not from storage.
+	 */
+	private void getDocPages(NmsEbMessage message, String type) {
+		JsonObject params = message.getParams();
+		int limit = params.getInteger("limit", PAGE_SIZE);
+		if ((limit <= 0) || (limit > MAX_PAGE_SIZE)) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "page size must be between 1 and " + MAX_PAGE_SIZE);
+			message.reply(response);
+			return;
+		}
+		if (!topologyModel.isLoaded()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "topology not loaded yet");
+			message.reply(response);
+			return;
+		}
+		if (params.containsKey("stream")) {
+			streamDocPages(message, topologyModel, type, params.getString("stream"), params.getString("cursor", ""), 
+					limit, 0, 0);
+			return;
+		}
+		JsonObject response = new JsonObject();
+		response.put("service", serviceName);
+		response.put("action", message.getAction());
+		response.put("content", docPage(topologyModel, type, params.getString("cursor", ""), limit));
+		message.reply(response);
+	}
+	private void streamDocPages(NmsEbMessage message, TopologyModel model, String type, String address, 
+			String cursor, int limit, int chunks, int count) {
+		JsonObject page = docPage(model, type, cursor, limit);
+		boolean last = !page.containsKey("cursor");
+		int sent = count + page.getJsonArray("docs").size();
+		JsonObject chunk = new JsonObject()
+				.put("service", serviceName)
+				.put("action", message.getAction())
+				.put("content", page
+						.put("chunk", chunks)
+						.put("last", last));
+
+		eb.send(address, chunk, ack -> {
+			if (ack.failed()) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", ack.cause().getMessage());
+				message.reply(response);
+			} else if (last) {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("content", new JsonObject()
+						.put("chunks", chunks + 1)
+						.put("count", sent));
+				message.reply(response);
+			} else {
+				streamDocPages(message, model, type, address, page.getString("cursor"), limit, chunks + 1, sent);
+			}
+		});
+	}
+	private static JsonObject docPage(TopologyModel model, String type, String cursor, int limit) {
+		return "node".equals(type) ? model.getNodePage(cursor, limit) : model.getLinkPage(cursor, limit);
+	}
 	protected void deleteNode(NmsEbMessage message) {
 		JsonObject params = message.getParams();
 		if (params.getString("_id","").isEmpty()) {
@@ -448,12 +677,13 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 
 				eb.send("nms.storage", delNodeMsg, rep -> {
 					if (rep.succeeded()) {
+						topologyModel.removeNode(params.getString("_id"));
 						JsonObject response = (JsonObject)rep.result().body();
 						response.put("service", serviceName);
 						response.put("action", message.getAction());
 						message.reply(response);
 						publishDeletedNode(params.getString("_id"));
-						publishUpdatedTopology();
+						publishTopologyDelta("delete", "node", new JsonObject().put("_id", params.getString("_id")));
 					} else {
 						JsonObject response = new JsonObject();
 						response.put("service", serviceName);
@@ -482,12 +712,13 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
+				topologyModel.removeLink(params.getString("_id"));
 				JsonObject response = (JsonObject)reply.result().body();
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
 				message.reply(response);
 				publishDeletedLink(params.getString("_id"));
-				publishUpdatedTopology();
+				publishTopologyDelta("delete", "link", new JsonObject().put("_id", params.getString("_id")));
 			} else {
 				JsonObject response = new JsonObject();
 				response.put("service", serviceName);
@@ -497,52 +728,397 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 				}
 			});		
 	}
-	protected void getTopology(NmsEbMessage message) {
-		JsonObject toStorageMsg = new JsonObject()
-			.put("action", "get_topology")
-			.put("params", new JsonObject());
-
-		eb.send("nms.storage", toStorageMsg, reply -> {
+	
+	/*
+	 * Batch of nodes: {"nodes": [{name, itfs, agent}]}
+	 * Items are checked in one pass, names must not be known or repeated,
+	 * and the valid ones are stored with one write (one per item without
+	 * storage batch actions). Invalid items are reported by index.
+	 */
+	protected void addNodes(NmsEbMessage message) {
+		JsonArray items = message.getParams().getJsonArray("nodes", new JsonArray());
+		if (items.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "nodes missing");
+			message.reply(response);
+			return;
+		}
+		
+		JsonArray errors = new JsonArray();
+		JsonArray toAdd = new JsonArray();
+		Set<String> names = new HashSet<String>();
+		for (int i = 0; i < items.size(); i++) {
+			JsonObject node = items.getJsonObject(i).copy();
+			String name = node.getString("name", "");
+			String error = null;
+			if (name.isEmpty()) {
+				error = "node name not specified";
+			} else if (node.getJsonArray("itfs", new JsonArray()).isEmpty()) {
+				error = "node must have at least one interface";
+			} else if ((topologyModel.getNodeByName(name) != null) || !names.add(name)) {
+				error = "node name already exists";
+			}
+			if (error != null) {
+				errors.add(new JsonObject().put("index", i).put("error", error));
+				continue;
+			}
+			if (!node.containsKey("agent")) {
+				node.put("agent", "");
+			}
+			node.put("_id", node.getString("_id", newId()));
+			node.put("status", "pending");
+			toAdd.add(node);
+		}
+		if (toAdd.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "no valid node");
+			response.put("errors", errors);
+			message.reply(response);
+			return;
+		}
+		
+		sendStorageBatch("add_nodes", "nodes", toAdd, "add_node", node -> (JsonObject) node, reply -> {
 			if (reply.succeeded()) {
-				JsonObject response = (JsonObject)reply.result().body();
+				toAdd.forEach(node -> topologyModel.putNode((JsonObject) node));
+				JsonObject response = reply.result();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("errors", errors);
+				message.reply(response);
+				publishTopologyDeltas("add", "node", toAdd);
+			} else {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", reply.cause().getMessage());
+				response.put("errors", errors);
+				message.reply(response);
+			}
+		});
+	}
+	
+	/*
+	 * Batch of links: {"links": [{source, target}]}
+	 * Link ends are checked against the topology model, read once from
+	 * storage if not loaded, and the valid links are stored with one write
+	 * (one per item without storage batch actions). Invalid items are
+	 * reported by index.
+	 */
+	protected void addLinks(NmsEbMessage message) {
+		JsonArray items = message.getParams().getJsonArray("links", new JsonArray());
+		if (items.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "links missing");
+			message.reply(response);
+			return;
+		}
+		if (topologyModel.isLoaded()) {
+			storeLinks(message, items, topologyModel);
+			return;
+		}
+		readTopology(res -> {
+			if (res.succeeded()) {
+				TopologyModel model = new TopologyModel();
+				model.load(res.result());
+				storeLinks(message, items, model);
+			} else {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", res.cause().getMessage());
+				message.reply(response);
+			}
+		});
+	}
+	private void storeLinks(NmsEbMessage message, JsonArray items, TopologyModel model) {
+		JsonArray errors = new JsonArray();
+		JsonArray toAdd = new JsonArray();
+		for (int i = 0; i < items.size(); i++) {
+			JsonObject link = items.getJsonObject(i).copy();
+			String error = null;
+			if (link.getString("source", "").isEmpty() || link.getString("target", "").isEmpty()) {
+				error = "link must have source and target node name";
+			} else if ((model.resolveNode(link.getString("source")) == null) 
+					|| (model.resolveNode(link.getString("target")) == null)) {
+				error = "specified nodes do not exist";
+			}
+			if (error != null) {
+				errors.add(new JsonObject().put("index", i).put("error", error));
+				continue;
+			}
+			// links refer to node Ids, whichever was given
+			link.put("source", model.resolveNode(link.getString("source")).getString("_id"));
+			link.put("target", model.resolveNode(link.getString("target")).getString("_id"));
+			link.put("_id", link.getString("_id", newId()));
+			link.put("status", "pending");
+			toAdd.add(link);
+		}
+		if (toAdd.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "no valid link");
+			response.put("errors", errors);
+			message.reply(response);
+			return;
+		}
+		
+		sendStorageBatch("add_links", "links", toAdd, "add_link", link -> (JsonObject) link, reply -> {
+			if (reply.succeeded()) {
+				toAdd.forEach(link -> topologyModel.putLink((JsonObject) link));
+				JsonObject response = reply.result();
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
+				response.put("errors", errors);
 				message.reply(response);
+				publishTopologyDeltas("add", "link", toAdd);
 			} else {
 				JsonObject response = new JsonObject();
 				response.put("service", serviceName);
 				response.put("action", message.getAction());
 				response.put("error", reply.cause().getMessage());
+				response.put("errors", errors);
 				message.reply(response);
 			}
 		});
-	}		
+	}
+	
+	/*
+	 * Batch of link deletions: {"links": [_id]}
+	 * Unknown links are reported by index when the topology model is loaded,
+	 * the others are deleted with one write (one per item without storage
+	 * batch actions).
+	 */
+	protected void deleteLinks(NmsEbMessage message) {
+		JsonArray items = message.getParams().getJsonArray("links", new JsonArray());
+		if (items.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "links missing");
+			message.reply(response);
+			return;
+		}
+		
+		JsonArray errors = new JsonArray();
+		JsonArray toDelete = new JsonArray();
+		Set<String> ids = new HashSet<String>();
+		for (int i = 0; i < items.size(); i++) {
+			Object item = items.getValue(i);
+			String id = (item instanceof String) ? (String) item : "";
+			String error = null;
+			if (id.isEmpty()) {
+				error = "link id not specified";
+			} else if (topologyModel.isLoaded() && (topologyModel.getLink(id) == null)) {
+				error = "link does not exist";
+			} else if (!ids.add(id)) {
+				error = "link id repeated";
+			}
+			if (error != null) {
+				errors.add(new JsonObject().put("index", i).put("error", error));
+				continue;
+			}
+			toDelete.add(id);
+		}
+		if (toDelete.isEmpty()) {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("error", "no valid link");
+			response.put("errors", errors);
+			message.reply(response);
+			return;
+		}
+		
+		sendStorageBatch("del_links", "links", toDelete, "del_link", id -> new JsonObject().put("_id", id), reply -> {
+			if (reply.succeeded()) {
+				toDelete.forEach(id -> topologyModel.removeLink((String) id));
+				JsonObject response = reply.result();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("errors", errors);
+				message.reply(response);
+				JsonArray deleted = new JsonArray();
+				for (Object id : toDelete) {
+					publishDeletedLink((String) id);
+					deleted.add(new JsonObject().put("_id", (String) id));
+				}
+				publishTopologyDeltas("delete", "link", deleted);
+			} else {
+				JsonObject response = new JsonObject();
+				response.put("service", serviceName);
+				response.put("action", message.getAction());
+				response.put("error", reply.cause().getMessage());
+				response.put("errors", errors);
+				message.reply(response);
+			}
+		});
+	}
+	protected void getTopology(NmsEbMessage message) {
+		readTopology(res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				response.put("content", res.result());
+			} else {
+				response.put("error", res.cause().getMessage());
+			}
+			message.reply(response);
+		});
+	}
+	
+	/*
+	 * Deltas published after {epoch, seq}: {epoch, seq, deltas} if they
+	 * are still in the log, {epoch, seq, snapshot} with the whole topology
+	 * otherwise
+	 */
+	protected void getTopologySince(NmsEbMessage message) {
+		JsonObject params = message.getParams();
+		long seq = params.getLong("seq", -1L);
+		JsonObject first = deltaLog.peekFirst();
+		boolean covered = (params.getLong("epoch", 0L) == topologyEpoch) 
+				&& (seq >= 0) && (seq <= topologySeq)
+				&& ((seq == topologySeq) || ((first != null) && (first.getLong("seq") <= seq + 1)));
+		if (covered) {
+			JsonArray deltas = new JsonArray();
+			for (JsonObject delta : deltaLog) {
+				if (delta.getLong("seq") > seq) {
+					deltas.add(delta);
+				}
+			}
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			response.put("content", new JsonObject()
+					.put("epoch", topologyEpoch)
+					.put("seq", topologySeq)
+					.put("deltas", deltas));
+			message.reply(response);
+			return;
+		}
+		readTopology(res -> {
+			JsonObject response = new JsonObject();
+			response.put("service", serviceName);
+			response.put("action", message.getAction());
+			if (res.succeeded()) {
+				JsonObject topology = res.result();
+				response.put("content", new JsonObject()
+						.put("epoch", topology.remove("epoch"))
+						.put("seq", topology.remove("seq"))
+						.put("snapshot", topology));
+			} else {
+				response.put("error", res.cause().getMessage());
+			}
+			message.reply(response);
+		});
+	}
 	
 	/*----------------------------------------------*/
 	
-	private void publishUpdatedTopology() {
+	/*
+	 * {nodes, links, epoch, seq}, from the topology model if loaded.
+	 * seq is the last delta already applied; later deltas may be
+	 * included too when read from storage, they can be applied again.
+	 */
+	private void readTopology(Handler<AsyncResult<JsonObject>> handler) {
+		long seq = topologySeq;
+		if (topologyModel.isLoaded()) {
+			handler.handle(Future.succeededFuture(topologyModel.toJson()
+					.put("epoch", topologyEpoch)
+					.put("seq", seq)));
+			return;
+		}
 		JsonObject toStorageMsg = new JsonObject()
 				.put("action", "get_topology")
 				.put("params", new JsonObject());
 
 		eb.send("nms.storage", toStorageMsg, reply -> {
 			if (reply.succeeded()) {
-				JsonObject response = (JsonObject)reply.result().body();				
+				JsonObject response = (JsonObject)reply.result().body();
 				if (response.containsKey("content")) {
-					JsonObject ebPubMsg = new JsonObject()
-							.put("service", serviceName)
-							.put("content", response.getJsonObject("content"));
-					eb.publish("nms.info.topology", ebPubMsg);
-					msgNbr++;
+					handler.handle(Future.succeededFuture(response.getJsonObject("content")
+							.put("epoch", topologyEpoch)
+							.put("seq", seq)));
 				} else {
-					LOG.error("Cannot get updated topology", response.getString("error"));
+					handler.handle(Future.failedFuture(response.getString("error")));
 				}
 			} else {
-				LOG.error("Cannot get updated topology", reply.cause().getMessage());
+				handler.handle(Future.failedFuture(reply.cause()));
 			}
 		});
 	}
 	
+	/*
+	 * Logs a topology change and schedules its publication on
+	 * nms.info.topology, merged with the other pending ones, as
+	 * {epoch, seq, deltas: [{seq, op, type, doc}]}, op being add, update
+	 * or delete and type node or link; deleted docs only carry their _id
+	 * and deleting a node deletes its links. A consumer missing a sequence
+	 * number catches up with get_topology_since.
+	 */
+	private void publishTopologyDelta(String op, String type, JsonObject doc) {
+		publishTopologyDeltas(op, type, new JsonArray().add(doc));
+	}
+	
+	// deltas of a batch action, always published in the same message
+	private void publishTopologyDeltas(String op, String type, JsonArray docs) {
+		for (Object doc : docs) {
+			topologySeq++;
+			JsonObject delta = new JsonObject()
+					.put("seq", topologySeq)
+					.put("op", op)
+					.put("type", type)
+					.put("doc", doc);
+			deltaLog.addLast(delta);
+			pendingDeltas.add(delta);
+		}
+		while (deltaLog.size() > deltaLogSize) {
+			deltaLog.removeFirst();
+		}
+		
+		long now = System.currentTimeMillis();
+		if ((publishTimer < 0) && (now - lastPublish >= publishWindowMs)) {
+			// idle, nothing to merge with
+			flushTopologyDeltas();
+		} else if (pendingDeltas.size() >= publishMaxDeltas) {
+			flushTopologyDeltas();
+		} else if (publishTimer < 0) {
+			publishTimer = vertx.setTimer(Math.max(1, lastPublish + publishWindowMs - now), 
+					id -> {
+						publishTimer = -1;
+						flushTopologyDeltas();
+					});
+		}
+	}
+	
+	// publishes the pending deltas as a single message
+	private void flushTopologyDeltas() {
+		if (publishTimer >= 0) {
+			vertx.cancelTimer(publishTimer);
+			publishTimer = -1;
+		}
+		if (pendingDeltas.isEmpty()) {
+			return;
+		}
+		JsonObject ebPubMsg = new JsonObject()
+				.put("service", serviceName)
+				.put("content", new JsonObject()
+						.put("epoch", topologyEpoch)
+						.put("seq", topologySeq)
+						.put("deltas", pendingDeltas));
+		pendingDeltas = new JsonArray();
+		lastPublish = System.currentTimeMillis();
+		eb.publish("nms.info.topology", ebPubMsg);
+		msgNbr++;
+	}
+	
 	private void publishDeletedNode(String id) {		
 		JsonObject ebPubMsg = new JsonObject()
 				.put("service", serviceName)
@@ -562,6 +1138,7 @@ public class TopologyServiceVerticle extends AmqpVerticle {
 	@Override
 	public void stop(Future stopFuture) throws Exception {
 		LOG.info("[Topology] Closing Service.");
+		flushTopologyDeltas();
 		super.stop(stopFuture);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package io.nms.client.routing;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Shortest paths between all node pairs of one graph.
+ * Single-source searches are spread over a fork/join pool, each task
+ * writing its own rows of a distance matrix and of a predecessor edge
+ * matrix held in primitive arrays (n*n entries each).
+ */
+public final class AllPairsPaths {
+
+	// sources searched by a leaf task
+	private static final int SOURCES_PER_TASK = 16;
+
+	private final CompactGraph graph;
+	private final RouteMetric metric;
+	private final int n;
+	private final double[] distance;
+	private final int[] predecessor;
+
+	private AllPairsPaths(CompactGraph graph, RouteMetric metric) {
+		this.graph = graph;
+		this.metric = metric;
+		this.n = graph.nodeCount();
+		this.distance = new double[n * n];
+		this.predecessor = new int[n * n];
+	}
+
+	public static AllPairsPaths compute(CompactGraph graph, RouteMetric metric, ForkJoinPool pool) {
+		AllPairsPaths paths = new AllPairsPaths(graph, metric);
+		if (paths.n > 0) {
+			// weights are memoized by the graph, build them before forking
+			graph.weights(metric);
+			pool.invoke(paths.new SourceRange(0, paths.n));
+		}
+		return paths;
+	}
+
+	// bytes needed by the matrices of a graph with n nodes
+	public static long getMemoryBytes(int n) {
+		return (long) n * n * (Double.BYTES + Integer.BYTES);
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public RouteMetric getMetric() {
+		return metric;
+	}
+
+	public int nodeCount() {
+		return n;
+	}
+
+	public long getMemoryBytes() {
+		return getMemoryBytes(n);
+	}
+
+	public boolean isReachable(int source, int target) {
+		return !Double.isInfinite(distance[source * n + target]);
+	}
+
+	// POSITIVE_INFINITY if the target is not reachable
+	public double getDistance(int source, int target) {
+		return distance[source * n + target];
+	}
+
+	// last edge of the path from source to target, -1 if none
+	public int getPredecessorEdge(int source, int target) {
+		return predecessor[source * n + target];
+	}
+
+	/*
+	 * Returns the node indexes from source to target, NULL if no path exists
+	 */
+	public int[] getPath(int source, int target) {
+		if (!isReachable(source, target)) {
+			return null;
+		}
+		int row = source * n;
+		int length = 1;
+		for (int step = target; step != source; step = graph.source(predecessor[row + step])) {
+			length++;
+		}
+		int[] path = new int[length];
+		int step = target;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = step;
+			if (i > 0) {
+				step = graph.source(predecessor[row + step]);
+			}
+		}
+		return path;
+	}
+
+	public List<String> getPathById(String sourceId, String targetId) {
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
+		if ((source < 0) || (target < 0)) {
+			return null;
+		}
+		int[] path = getPath(source, target);
+		return (path == null) ? null : graph.toNodeIds(path);
+	}
+
+	/*
+	 * Splits the sources in halves down to SOURCES_PER_TASK,
+	 * leaves share one search workspace for their sources
+	 */
+	private class SourceRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		SourceRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SOURCES_PER_TASK) {
+				HeapDijkstraAlgorithm search = new HeapDijkstraAlgorithm(graph, metric);
+				for (int source = from; source < to; source++) {
+					search.getShortestPathTree(source, distance, predecessor, source * n);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new SourceRange(from, middle), new SourceRange(middle, to));
+		}
+	}
+}
@@ -0,0 +1,570 @@
+package io.nms.client.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Compressed sparse row form of the topology.
+ * Node Ids are interned to dense indexes [0, nodeCount) and the links
+ * leaving node u are the edges [firstEdge(u), endEdge(u)). Edge targets,
+ * sources, link metrics and link Ids are kept in parallel arrays.
+ * Edge weights for a given RouteMetric are derived from the metrics
+ * on first use and memoized.
+ * An incoming edges index is kept as well for reverse searches.
+ * The arrays are never modified after construction. Changes produce a
+ * new graph that keeps the node indexes of this one; deleted nodes stay
+ * as isolated indexes with a NULL Id until the graph is compacted.
+ */
+public class CompactGraph {
+
+	// values used when a metric is not reported for a link
+	private static final double DEFAULT_LATENCY = 1.0;
+	private static final double DEFAULT_CAPACITY = 0.0;
+	private static final double DEFAULT_COST = 1.0;
+	private static final double DEFAULT_UTILISATION = 0.0;
+
+	private final String[] nodeIds;
+	private final String[] nodeNames;
+	private final HashMap<String, Integer> nodeIndex;
+
+	private final int[] offsets;
+	private final int[] sources;
+	private final int[] targets;
+	private final double[] latency;
+	private final double[] capacity;
+	private final double[] cost;
+	private final double[] utilisation;
+	private final double maxCapacity;
+	private final String[] linkIds;
+	private final HashMap<String, Integer> linkIndex;
+
+	private final int[] inOffsets;
+	private final int[] inEdges;
+
+	private final ConcurrentHashMap<RouteMetric, double[]> weights = 
+			new ConcurrentHashMap<RouteMetric, double[]>();
+
+	public CompactGraph() {
+		this(new JsonObject()
+				.put("nodes", new JsonArray())
+				.put("links", new JsonArray()));
+	}
+
+	public CompactGraph(JsonObject jGraph) {
+		this(parse(jGraph));
+	}
+
+	private CompactGraph(Parts parts) {
+		int n = parts.nodeCount;
+		int m = parts.edgeCount;
+		nodeIds = Arrays.copyOf(parts.nodeIds, n);
+		nodeNames = Arrays.copyOf(parts.nodeNames, n);
+		nodeIndex = new HashMap<String, Integer>(2 * n);
+		for (int u = 0; u < n; u++) {
+			if (nodeIds[u] != null) {
+				nodeIndex.put(nodeIds[u], u);
+			}
+		}
+
+		// counting sort of the edges by source, keeping their input order
+		offsets = new int[n + 1];
+		for (int i = 0; i < m; i++) {
+			offsets[parts.sources[i] + 1]++;
+		}
+		for (int u = 0; u < n; u++) {
+			offsets[u + 1] += offsets[u];
+		}
+		sources = new int[m];
+		targets = new int[m];
+		latency = new double[m];
+		capacity = new double[m];
+		cost = new double[m];
+		utilisation = new double[m];
+		double maxCap = 0;
+		linkIds = new String[m];
+		linkIndex = new HashMap<String, Integer>(2 * m);
+		parts.placement = new int[m];
+		int[] next = new int[n];
+		System.arraycopy(offsets, 0, next, 0, n);
+		for (int i = 0; i < m; i++) {
+			int e = next[parts.sources[i]]++;
+			parts.placement[i] = e;
+			sources[e] = parts.sources[i];
+			targets[e] = parts.targets[i];
+			latency[e] = parts.latency[i];
+			capacity[e] = parts.capacity[i];
+			cost[e] = parts.cost[i];
+			utilisation[e] = parts.utilisation[i];
+			maxCap = Math.max(maxCap, capacity[e]);
+			linkIds[e] = parts.linkIds[i];
+			if (linkIds[e] != null) {
+				linkIndex.put(linkIds[e], e);
+			}
+		}
+		maxCapacity = maxCap;
+
+		// incoming edges index
+		inOffsets = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			inOffsets[targets[e] + 1]++;
+		}
+		for (int u = 0; u < n; u++) {
+			inOffsets[u + 1] += inOffsets[u];
+		}
+		inEdges = new int[m];
+		System.arraycopy(inOffsets, 0, next, 0, n);
+		for (int e = 0; e < m; e++) {
+			inEdges[next[targets[e]]++] = e;
+		}
+	}
+
+	private static Parts parse(JsonObject jGraph) {
+		JsonArray jNodes = jGraph.getJsonArray("nodes", new JsonArray());
+		JsonArray jLinks = jGraph.getJsonArray("links", new JsonArray());
+		Parts parts = new Parts(jNodes.size(), jLinks.size());
+
+		// intern node Ids
+		HashMap<String, Integer> index = new HashMap<String, Integer>(2 * jNodes.size());
+		for (int i = 0; i < jNodes.size(); i++) {
+			JsonObject jNode = jNodes.getJsonObject(i);
+			String id = jNode.getString("_id");
+			if ((id == null) || index.containsKey(id)) {
+				continue;
+			}
+			index.put(id, parts.nodeCount);
+			parts.addNode(id, jNode.getString("name"));
+		}
+
+		// keep links whose both ends are known
+		for (int i = 0; i < jLinks.size(); i++) {
+			JsonObject jLink = jLinks.getJsonObject(i);
+			Integer s = index.get(jLink.getString("source"));
+			Integer t = index.get(jLink.getString("target"));
+			if ((s == null) || (t == null)) {
+				continue;
+			}
+			parts.addEdge(s, t, jLink);
+		}
+		return parts;
+	}
+
+	public boolean isSet() {
+		return (nodeIndex.size() > 0) && (edgeCount() > 0);
+	}
+
+	// number of node indexes, including deleted ones
+	public int nodeCount() {
+		return offsets.length - 1;
+	}
+
+	// number of nodes not deleted
+	public int liveNodeCount() {
+		return nodeIndex.size();
+	}
+
+	// true once deleted node indexes exceed a quarter of the live nodes
+	public boolean needsCompaction() {
+		return 4 * (nodeCount() - liveNodeCount()) > liveNodeCount();
+	}
+
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	// false for indexes of deleted nodes
+	public boolean containsNode(int node) {
+		return nodeIds[node] != null;
+	}
+
+	// returns -1 if the node does not exist
+	public int indexOf(String nodeId) {
+		Integer i = nodeIndex.get(nodeId);
+		return (i == null) ? -1 : i;
+	}
+
+	public String nodeId(int node) {
+		return nodeIds[node];
+	}
+
+	public String nodeName(int node) {
+		return nodeNames[node];
+	}
+
+	public int firstEdge(int node) {
+		return offsets[node];
+	}
+
+	public int endEdge(int node) {
+		return offsets[node + 1];
+	}
+
+	public int firstInEdge(int node) {
+		return inOffsets[node];
+	}
+
+	public int endInEdge(int node) {
+		return inOffsets[node + 1];
+	}
+
+	// edge index of the i-th incoming edge, firstInEdge(u) <= i < endInEdge(u)
+	public int inEdge(int i) {
+		return inEdges[i];
+	}
+
+	public int source(int edge) {
+		return sources[edge];
+	}
+
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	public double latency(int edge) {
+		return latency[edge];
+	}
+
+	public double capacity(int edge) {
+		return capacity[edge];
+	}
+
+	public double cost(int edge) {
+		return cost[edge];
+	}
+
+	public double utilisation(int edge) {
+		return utilisation[edge];
+	}
+
+	public double getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	/*
+	 * Edge weights for the metric, indexed by edge.
+	 * The returned array is shared and must not be modified.
+	 */
+	double[] weights(RouteMetric metric) {
+		return weights.computeIfAbsent(metric, k -> {
+			double[] w = new double[edgeCount()];
+			for (int e = 0; e < w.length; e++) {
+				w[e] = k.linkCost(latency[e], capacity[e], cost[e], utilisation[e], maxCapacity);
+			}
+			return w;
+		});
+	}
+
+	public String linkId(int edge) {
+		return linkIds[edge];
+	}
+
+	// returns -1 if the link does not exist
+	public int edgeOf(String linkId) {
+		Integer e = linkIndex.get(linkId);
+		return (e == null) ? -1 : e;
+	}
+
+	public List<String> toNodeIds(int[] path) {
+		List<String> pathIds = new ArrayList<String>(path.length);
+		for (int node : path) {
+			pathIds.add(nodeIds[node]);
+		}
+		return pathIds;
+	}
+
+	/*
+	 * True if the topology JSON describes the same nodes and links as this
+	 * graph, with the same ends and metrics.
+	 */
+	public boolean matches(JsonObject jGraph) {
+		JsonArray jNodes = jGraph.getJsonArray("nodes", new JsonArray());
+		JsonArray jLinks = jGraph.getJsonArray("links", new JsonArray());
+		HashMap<String, Integer> seen = new HashMap<String, Integer>(2 * jNodes.size());
+		for (int i = 0; i < jNodes.size(); i++) {
+			JsonObject jNode = jNodes.getJsonObject(i);
+			String id = jNode.getString("_id");
+			if ((id == null) || seen.containsKey(id)) {
+				continue;
+			}
+			int u = indexOf(id);
+			if ((u < 0) || !equal(nodeNames[u], jNode.getString("name"))) {
+				return false;
+			}
+			seen.put(id, u);
+		}
+		if (seen.size() != nodeIndex.size()) {
+			return false;
+		}
+		int count = 0;
+		for (int i = 0; i < jLinks.size(); i++) {
+			JsonObject jLink = jLinks.getJsonObject(i);
+			Integer s = seen.get(jLink.getString("source"));
+			Integer t = seen.get(jLink.getString("target"));
+			if ((s == null) || (t == null)) {
+				continue;
+			}
+			int e = edgeOf(jLink.getString("_id"));
+			if ((e < 0) || (sources[e] != s) || (targets[e] != t)
+					|| (latency[e] != getMetric(jLink, RouteMetric.LATENCY, DEFAULT_LATENCY))
+					|| (capacity[e] != getMetric(jLink, RouteMetric.CAPACITY, DEFAULT_CAPACITY))
+					|| (cost[e] != getMetric(jLink, RouteMetric.COST, DEFAULT_COST))
+					|| (utilisation[e] != getMetric(jLink, RouteMetric.UTILISATION, DEFAULT_UTILISATION))) {
+				return false;
+			}
+			count++;
+		}
+		return count == edgeCount();
+	}
+
+	private static boolean equal(String a, String b) {
+		return (a == null) ? (b == null) : a.equals(b);
+	}
+
+	// reads a non-negative metric from a link JSON, or the default value
+	private static double getMetric(JsonObject jLink, String key, double def) {
+		Object value = jLink.getValue(key);
+		if (!(value instanceof Number)) {
+			return def;
+		}
+		double d = ((Number)value).doubleValue();
+		return (Double.isNaN(d) || (d < 0)) ? def : d;
+	}
+
+	/*
+	 * Same nodes and links without the indexes of deleted nodes.
+	 * Live nodes keep their relative order but not their indexes.
+	 */
+	public CompactGraph compact() {
+		int n = nodeCount();
+		int[] remap = new int[n];
+		Parts parts = new Parts(liveNodeCount(), edgeCount());
+		for (int u = 0; u < n; u++) {
+			remap[u] = parts.nodeCount;
+			if (nodeIds[u] != null) {
+				parts.addNode(nodeIds[u], nodeNames[u]);
+			}
+		}
+		for (int e = 0; e < edgeCount(); e++) {
+			parts.addEdge(remap[sources[e]], remap[targets[e]], 
+					latency[e], capacity[e], cost[e], utilisation[e], linkIds[e]);
+		}
+		return new CompactGraph(parts);
+	}
+
+	/*---------------- graph changes ----------------*/
+
+	// NULL if none of the links exists
+	public GraphChange removeLinks(Collection<String> ids) {
+		return apply(Collections.<String>emptyList(), ids, 
+				Collections.<JsonObject>emptyList(), Collections.<JsonObject>emptyList());
+	}
+
+	public GraphChange removeLink(String id) {
+		return removeLinks(Collections.singletonList(id));
+	}
+
+	// removes the node and its links, NULL if the node does not exist
+	public GraphChange removeNode(String nodeId) {
+		return apply(Collections.singletonList(nodeId), Collections.<String>emptyList(), 
+				Collections.<JsonObject>emptyList(), Collections.<JsonObject>emptyList());
+	}
+
+	// NULL if the node already exists or has no Id
+	public GraphChange addNode(JsonObject jNode) {
+		return apply(Collections.<String>emptyList(), Collections.<String>emptyList(), 
+				Collections.singletonList(jNode), Collections.<JsonObject>emptyList());
+	}
+
+	// NULL if the link already exists or one of its ends is unknown
+	public GraphChange addLink(JsonObject jLink) {
+		return apply(Collections.<String>emptyList(), Collections.<String>emptyList(), 
+				Collections.<JsonObject>emptyList(), Collections.singletonList(jLink));
+	}
+
+	/*
+	 * Batch of changes derived at once: nodes (with their links) and links
+	 * are removed, then nodes and links are added. Unknown removals, known
+	 * additions and links with an unknown end are skipped; NULL if nothing
+	 * changes.
+	 */
+	public GraphChange apply(Collection<String> removedNodeIds, Collection<String> removedLinkIds, 
+			Collection<JsonObject> addedNodes, Collection<JsonObject> addedLinks) {
+		int n = nodeCount();
+		boolean[] removedNode = new boolean[n];
+		boolean[] removedEdge = new boolean[edgeCount()];
+		boolean any = false;
+		for (String id : removedNodeIds) {
+			int u = indexOf(id);
+			if (u < 0) {
+				continue;
+			}
+			removedNode[u] = true;
+			any = true;
+			for (int e = firstEdge(u); e < endEdge(u); e++) {
+				removedEdge[e] = true;
+			}
+			for (int i = firstInEdge(u); i < endInEdge(u); i++) {
+				removedEdge[inEdge(i)] = true;
+			}
+		}
+		for (String id : removedLinkIds) {
+			int e = edgeOf(id);
+			if (e >= 0) {
+				removedEdge[e] = true;
+				any = true;
+			}
+		}
+
+		// added nodes take the next indexes, added links need both ends
+		HashMap<String, Integer> addedIndex = new HashMap<String, Integer>();
+		List<JsonObject> nodes = new ArrayList<JsonObject>();
+		for (JsonObject jNode : addedNodes) {
+			String id = jNode.getString("_id");
+			if ((id == null) || addedIndex.containsKey(id) || ((indexOf(id) >= 0) && !removedNode[indexOf(id)])) {
+				continue;
+			}
+			addedIndex.put(id, n + nodes.size());
+			nodes.add(jNode);
+		}
+		HashMap<String, Integer> addedLinkIds = new HashMap<String, Integer>();
+		List<JsonObject> links = new ArrayList<JsonObject>();
+		List<Integer> ends = new ArrayList<Integer>();
+		for (JsonObject jLink : addedLinks) {
+			String id = jLink.getString("_id");
+			int s = endIndex(jLink.getString("source"), removedNode, addedIndex);
+			int t = endIndex(jLink.getString("target"), removedNode, addedIndex);
+			if ((id == null) || (s < 0) || (t < 0) || addedLinkIds.containsKey(id) 
+					|| ((edgeOf(id) >= 0) && !removedEdge[edgeOf(id)])) {
+				continue;
+			}
+			addedLinkIds.put(id, links.size());
+			links.add(jLink);
+			ends.add(s);
+			ends.add(t);
+		}
+		if (!any && nodes.isEmpty() && links.isEmpty()) {
+			return null;
+		}
+		return derive(removedEdge, removedNode, nodes, links, ends);
+	}
+
+	// index of a link end in the derived graph, -1 if unknown or removed
+	private int endIndex(String nodeId, boolean[] removedNode, HashMap<String, Integer> addedIndex) {
+		Integer added = addedIndex.get(nodeId);
+		if (added != null) {
+			return added;
+		}
+		int u = indexOf(nodeId);
+		return ((u < 0) || removedNode[u]) ? -1 : u;
+	}
+
+	private GraphChange derive(boolean[] removedEdge, boolean[] removedNode, 
+			List<JsonObject> addedNodes, List<JsonObject> addedLinks, List<Integer> addedEnds) {
+		int n = nodeCount();
+		int m = edgeCount();
+		Parts parts = new Parts(n + addedNodes.size(), m + addedLinks.size());
+		for (int u = 0; u < n; u++) {
+			parts.addNode(removedNode[u] ? null : nodeIds[u], nodeNames[u]);
+		}
+		for (JsonObject jNode : addedNodes) {
+			parts.addNode(jNode.getString("_id"), jNode.getString("name"));
+		}
+		int[] position = new int[m];
+		int removedCount = 0;
+		for (int e = 0; e < m; e++) {
+			if (removedEdge[e]) {
+				position[e] = -1;
+				removedCount++;
+				continue;
+			}
+			position[e] = parts.edgeCount;
+			parts.addEdge(sources[e], targets[e], latency[e], capacity[e], cost[e], utilisation[e], linkIds[e]);
+		}
+		int firstAdded = parts.edgeCount;
+		for (int i = 0; i < addedLinks.size(); i++) {
+			parts.addEdge(addedEnds.get(2 * i), addedEnds.get(2 * i + 1), addedLinks.get(i));
+		}
+
+		CompactGraph graph = new CompactGraph(parts);
+		int[] edgeRemap = new int[m];
+		int[] removed = new int[removedCount];
+		int r = 0;
+		for (int e = 0; e < m; e++) {
+			if (position[e] < 0) {
+				edgeRemap[e] = -1;
+				removed[r++] = e;
+			} else {
+				edgeRemap[e] = parts.placement[position[e]];
+			}
+		}
+		int[] added = new int[addedLinks.size()];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = parts.placement[firstAdded + i];
+		}
+		return new GraphChange(this, graph, edgeRemap, removed, added, removedNode);
+	}
+
+	/*
+	 * Nodes and edges in input order, before sorting into CSR form
+	 */
+	private static final class Parts {
+		String[] nodeIds;
+		String[] nodeNames;
+		int nodeCount = 0;
+		int[] sources;
+		int[] targets;
+		double[] latency;
+		double[] capacity;
+		double[] cost;
+		double[] utilisation;
+		String[] linkIds;
+		int edgeCount = 0;
+		// CSR index of each input edge, set when the graph is built
+		int[] placement;
+
+		Parts(int nodes, int edges) {
+			nodeIds = new String[nodes];
+			nodeNames = new String[nodes];
+			sources = new int[edges];
+			targets = new int[edges];
+			latency = new double[edges];
+			capacity = new double[edges];
+			cost = new double[edges];
+			utilisation = new double[edges];
+			linkIds = new String[edges];
+		}
+
+		void addNode(String id, String name) {
+			nodeIds[nodeCount] = id;
+			nodeNames[nodeCount] = name;
+			nodeCount++;
+		}
+
+		void addEdge(int s, int t, JsonObject jLink) {
+			addEdge(s, t, 
+					getMetric(jLink, RouteMetric.LATENCY, DEFAULT_LATENCY),
+					getMetric(jLink, RouteMetric.CAPACITY, DEFAULT_CAPACITY),
+					getMetric(jLink, RouteMetric.COST, DEFAULT_COST),
+					getMetric(jLink, RouteMetric.UTILISATION, DEFAULT_UTILISATION),
+					jLink.getString("_id"));
+		}
+
+		void addEdge(int s, int t, double lat, double cap, double c, double util, String id) {
+			sources[edgeCount] = s;
+			targets[edgeCount] = t;
+			latency[edgeCount] = lat;
+			capacity[edgeCount] = cap;
+			cost[edgeCount] = c;
+			utilisation[edgeCount] = util;
+			linkIds[edgeCount] = id;
+			edgeCount++;
+		}
+	}
+}
@@ -0,0 +1,590 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Contraction hierarchy over one compact graph and metric.
+ * Nodes are contracted one by one, least important first, adding a
+ * shortcut u->w for each path u->v->w that no other path of at most
+ * the same cost replaces (witness search). A query is then a
+ * bidirectional search climbing only towards more important nodes,
+ * and shortcuts are unpacked into the original links of the graph.
+ * Nodes of high degree are set aside while the others are contracted:
+ * they form the core, left uncontracted and searched in both directions.
+ * The hierarchy is never modified once built; queries run in a workspace
+ * owned by the caller, reusable across hierarchies.
+ */
+public final class ContractionHierarchy {
+
+	// bounds of the witness searches, shortcuts may be added in excess beyond them
+	private static final int WITNESS_SETTLED_LIMIT = 50;
+	private static final int PRIORITY_SETTLED_LIMIT = 10;
+	// degree above which a node is left in the core
+	private static final int CORE_DEGREE = 64;
+
+	private final CompactGraph graph;
+	private final RouteMetric metric;
+	private final int n;
+	private final int[] rank;
+
+	// hierarchy edges: original links (orig >= 0) and shortcuts (two children)
+	private final int edgeCount;
+	private final int[] edgeSource;
+	private final int[] edgeTarget;
+	private final double[] edgeWeight;
+	private final int[] edgeOrig;
+	private final int[] edgeFirst;
+	private final int[] edgeSecond;
+
+	// upward edges of each node: out-edges for the forward search, in-edges for the backward one
+	private final int[] upOffsets;
+	private final int[] upEdges;
+	private final int[] downOffsets;
+	private final int[] downEdges;
+
+	private final int shortcutCount;
+	private final int coreSize;
+	private final long buildMillis;
+
+	private ContractionHierarchy(Builder b, long buildMillis) {
+		this.graph = b.graph;
+		this.metric = b.metric;
+		this.n = b.n;
+		this.rank = b.rank;
+		this.edgeCount = b.edgeCount;
+		this.edgeSource = Arrays.copyOf(b.edgeSource, edgeCount);
+		this.edgeTarget = Arrays.copyOf(b.edgeTarget, edgeCount);
+		this.edgeWeight = Arrays.copyOf(b.edgeWeight, edgeCount);
+		this.edgeOrig = Arrays.copyOf(b.edgeOrig, edgeCount);
+		this.edgeFirst = Arrays.copyOf(b.edgeFirst, edgeCount);
+		this.edgeSecond = Arrays.copyOf(b.edgeSecond, edgeCount);
+		this.shortcutCount = b.shortcutCount;
+		this.coreSize = b.coreSize;
+		this.buildMillis = buildMillis;
+
+		// counting sort of the edges on their lower ranked end, core edges go both ways
+		upOffsets = new int[n + 1];
+		downOffsets = new int[n + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			if (isUp(e)) {
+				upOffsets[edgeSource[e] + 1]++;
+			}
+			if (isDown(e)) {
+				downOffsets[edgeTarget[e] + 1]++;
+			}
+		}
+		for (int u = 0; u < n; u++) {
+			upOffsets[u + 1] += upOffsets[u];
+			downOffsets[u + 1] += downOffsets[u];
+		}
+		upEdges = new int[upOffsets[n]];
+		downEdges = new int[downOffsets[n]];
+		int[] upNext = Arrays.copyOf(upOffsets, n);
+		int[] downNext = Arrays.copyOf(downOffsets, n);
+		for (int e = 0; e < edgeCount; e++) {
+			if (isUp(e)) {
+				upEdges[upNext[edgeSource[e]]++] = e;
+			}
+			if (isDown(e)) {
+				downEdges[downNext[edgeTarget[e]]++] = e;
+			}
+		}
+	}
+
+	// core nodes share the highest rank
+	private boolean isUp(int e) {
+		return rank[edgeSource[e]] <= rank[edgeTarget[e]];
+	}
+
+	private boolean isDown(int e) {
+		return rank[edgeSource[e]] >= rank[edgeTarget[e]];
+	}
+
+	public static ContractionHierarchy build(CompactGraph graph, RouteMetric metric) {
+		long start = System.nanoTime();
+		Builder builder = new Builder(graph, metric);
+		builder.contractAll();
+		return new ContractionHierarchy(builder, (System.nanoTime() - start) / 1000000);
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public RouteMetric getMetric() {
+		return metric;
+	}
+
+	public int getShortcutCount() {
+		return shortcutCount;
+	}
+
+	// number of nodes left uncontracted
+	public int getCoreSize() {
+		return coreSize;
+	}
+
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	// approximate size of the hierarchy arrays
+	public long getMemoryBytes() {
+		long perEdge = 5L * Integer.BYTES + Double.BYTES + Integer.BYTES;
+		return edgeCount * perEdge + 3L * (n + 1) * Integer.BYTES;
+	}
+
+	/*
+	 * Shortest path between two node indexes, NULL if none
+	 */
+	public GraphPath getShortestPath(int source, int target) {
+		return getShortestPath(source, target, new Workspace());
+	}
+
+	/*
+	 * Shortest path between two node indexes in the given workspace,
+	 * which must not be used by two queries at once
+	 */
+	public GraphPath getShortestPath(int source, int target, Workspace ws) {
+		ws.prepare(n);
+		ws.reach(0, source, 0, -1);
+		ws.reach(1, target, 0, -1);
+		ws.frontier[0].push(source, 0);
+		ws.frontier[1].push(target, 0);
+		double best = (source == target) ? 0 : Double.POSITIVE_INFINITY;
+		int meeting = (source == target) ? source : -1;
+		while (true) {
+			double forward = ws.frontier[0].isEmpty() ? Double.POSITIVE_INFINITY : ws.frontier[0].minKey();
+			double backward = ws.frontier[1].isEmpty() ? Double.POSITIVE_INFINITY : ws.frontier[1].minKey();
+			if (Math.min(forward, backward) >= best) {
+				break;
+			}
+			int side = (forward <= backward) ? 0 : 1;
+			int node = ws.frontier[side].poll();
+			int other = 1 - side;
+			if ((ws.reached[other][node] == ws.stamp) && (ws.dist[0][node] + ws.dist[1][node] < best)) {
+				best = ws.dist[0][node] + ws.dist[1][node];
+				meeting = node;
+			}
+			int[] offsets = (side == 0) ? upOffsets : downOffsets;
+			int[] edges = (side == 0) ? upEdges : downEdges;
+			for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+				int e = edges[i];
+				int next = (side == 0) ? edgeTarget[e] : edgeSource[e];
+				double d = ws.dist[side][node] + edgeWeight[e];
+				if ((ws.reached[side][next] != ws.stamp) || (d < ws.dist[side][next])) {
+					ws.reach(side, next, d, e);
+					ws.frontier[side].push(next, d);
+				}
+			}
+		}
+		// the heaps are left empty for the next query
+		ws.frontier[0].clear();
+		ws.frontier[1].clear();
+		return (meeting < 0) ? null : unpack(source, target, meeting, best, ws.edge);
+	}
+
+	// original links of the path, shortcuts replaced by their children
+	private GraphPath unpack(int source, int target, int meeting, double cost, int[][] edge) {
+		IntList hierarchyEdges = new IntList();
+		for (int step = meeting; step != source; step = edgeSource[edge[0][step]]) {
+			hierarchyEdges.add(edge[0][step]);
+		}
+		hierarchyEdges.reverse();
+		for (int step = meeting; step != target; step = edgeTarget[edge[1][step]]) {
+			hierarchyEdges.add(edge[1][step]);
+		}
+		IntList links = new IntList();
+		IntList stack = new IntList();
+		for (int i = 0; i < hierarchyEdges.size; i++) {
+			stack.add(hierarchyEdges.values[i]);
+			while (stack.size > 0) {
+				int e = stack.values[--stack.size];
+				if (edgeOrig[e] >= 0) {
+					links.add(edgeOrig[e]);
+				} else {
+					stack.add(edgeSecond[e]);
+					stack.add(edgeFirst[e]);
+				}
+			}
+		}
+		int[] pathEdges = Arrays.copyOf(links.values, links.size);
+		int[] pathNodes = new int[pathEdges.length + 1];
+		pathNodes[0] = source;
+		for (int i = 0; i < pathEdges.length; i++) {
+			pathNodes[i + 1] = graph.target(pathEdges[i]);
+		}
+		return new GraphPath(pathNodes, pathEdges, cost);
+	}
+
+	/*
+	 * Node preparation: ordering, witness searches and shortcut creation
+	 */
+	private static final class Builder {
+
+		private final CompactGraph graph;
+		private final RouteMetric metric;
+		private final int n;
+		private final int[] rank;
+		private final boolean[] contracted;
+		private final boolean[] core;
+		private final int[] contractedNeighbors;
+		private final int[] lastContracted;
+
+		private int edgeCount = 0;
+		private int shortcutCount = 0;
+		private int coreSize = 0;
+		private int[] edgeSource;
+		private int[] edgeTarget;
+		private double[] edgeWeight;
+		private int[] edgeOrig;
+		private int[] edgeFirst;
+		private int[] edgeSecond;
+
+		// edges of the remaining graph, filtered on contracted ends
+		private final int[][] out;
+		private final int[] outSize;
+		private final int[][] in;
+		private final int[] inSize;
+
+		// witness search workspace
+		private final double[] dist;
+		private final int[] reached;
+		private final int[] wanted;
+		private int stamp = 0;
+		private final IntMinHeap frontier;
+
+		Builder(CompactGraph graph, RouteMetric metric) {
+			this.graph = graph;
+			this.metric = metric;
+			this.n = graph.nodeCount();
+			rank = new int[n];
+			contracted = new boolean[n];
+			core = new boolean[n];
+			contractedNeighbors = new int[n];
+			lastContracted = new int[n];
+			Arrays.fill(lastContracted, -1);
+			int capacity = Math.max(16, 2 * graph.edgeCount());
+			edgeSource = new int[capacity];
+			edgeTarget = new int[capacity];
+			edgeWeight = new double[capacity];
+			edgeOrig = new int[capacity];
+			edgeFirst = new int[capacity];
+			edgeSecond = new int[capacity];
+			out = new int[n][];
+			outSize = new int[n];
+			in = new int[n][];
+			inSize = new int[n];
+			dist = new double[n];
+			reached = new int[n];
+			wanted = new int[n];
+			frontier = new IntMinHeap(n);
+
+			// cheapest link of each (source, target) pair, no self loops
+			double[] weights = graph.weights(metric);
+			int[] cheapest = new int[n];
+			Arrays.fill(cheapest, -1);
+			for (int u = 0; u < n; u++) {
+				int first = edgeCount;
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					if (v == u) {
+						continue;
+					}
+					int known = cheapest[v];
+					if ((known >= first) && (known < edgeCount)) {
+						if (weights[e] < edgeWeight[known]) {
+							edgeWeight[known] = weights[e];
+							edgeOrig[known] = e;
+						}
+						continue;
+					}
+					cheapest[v] = addEdge(u, v, weights[e], e, -1, -1);
+				}
+			}
+			for (int e = 0; e < edgeCount; e++) {
+				link(e);
+			}
+		}
+
+		void contractAll() {
+			IntMinHeap queue = new IntMinHeap(n);
+			for (int v = 0; v < n; v++) {
+				queue.push(v, priority(v));
+			}
+			int order = 0;
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				// lazy update: priorities of the other nodes may be stale
+				double p = priority(v);
+				if (!queue.isEmpty() && (p > queue.minKey())) {
+					queue.push(v, p);
+					continue;
+				}
+				if (degree(v) > CORE_DEGREE) {
+					// the other nodes keep being contracted around it
+					core[v] = true;
+					coreSize++;
+					continue;
+				}
+				contract(v);
+				rank[v] = order++;
+				for (int i = 0; i < outSize[v]; i++) {
+					touch(edgeTarget[out[v][i]], v, queue);
+				}
+				for (int i = 0; i < inSize[v]; i++) {
+					touch(edgeSource[in[v][i]], v, queue);
+				}
+			}
+			for (int v = 0; v < n; v++) {
+				if (!contracted[v]) {
+					rank[v] = n;
+				}
+			}
+		}
+
+		// updates a neighbour of the contracted node v, once per neighbour
+		private void touch(int node, int v, IntMinHeap queue) {
+			if (!contracted[node] && (lastContracted[node] != v)) {
+				lastContracted[node] = v;
+				contractedNeighbors[node]++;
+				prune(node);
+				if (!core[node]) {
+					queue.push(node, priority(node));
+				}
+			}
+		}
+
+		// drops the edges towards contracted nodes from the adjacency of the node
+		private void prune(int node) {
+			int size = 0;
+			for (int i = 0; i < outSize[node]; i++) {
+				if (!contracted[edgeTarget[out[node][i]]]) {
+					out[node][size++] = out[node][i];
+				}
+			}
+			outSize[node] = size;
+			size = 0;
+			for (int i = 0; i < inSize[node]; i++) {
+				if (!contracted[edgeSource[in[node][i]]]) {
+					in[node][size++] = in[node][i];
+				}
+			}
+			inSize[node] = size;
+		}
+
+		// edge difference plus contracted neighbours, for uniform contraction
+		private double priority(int v) {
+			int shortcuts = shortcuts(v, false);
+			return (shortcuts - degree(v)) + contractedNeighbors[v];
+		}
+
+		// edges of the node in the remaining graph
+		private int degree(int v) {
+			int degree = 0;
+			for (int i = 0; i < inSize[v]; i++) {
+				if (!contracted[edgeSource[in[v][i]]]) {
+					degree++;
+				}
+			}
+			for (int i = 0; i < outSize[v]; i++) {
+				if (!contracted[edgeTarget[out[v][i]]]) {
+					degree++;
+				}
+			}
+			return degree;
+		}
+
+		private void contract(int v) {
+			shortcuts(v, true);
+			contracted[v] = true;
+		}
+
+		/*
+		 * Counts, and adds if requested, the shortcuts replacing v
+		 * between its remaining neighbours
+		 */
+		private int shortcuts(int v, boolean add) {
+			int count = 0;
+			int limit = add ? WITNESS_SETTLED_LIMIT : PRIORITY_SETTLED_LIMIT;
+			for (int i = 0; i < inSize[v]; i++) {
+				int inEdge = in[v][i];
+				int u = edgeSource[inEdge];
+				if (contracted[u]) {
+					continue;
+				}
+				nextSearch();
+				double maxCost = Double.NEGATIVE_INFINITY;
+				int targets = 0;
+				for (int j = 0; j < outSize[v]; j++) {
+					int w = edgeTarget[out[v][j]];
+					if (!contracted[w] && (w != u)) {
+						maxCost = Math.max(maxCost, edgeWeight[inEdge] + edgeWeight[out[v][j]]);
+						if (wanted[w] != stamp) {
+							wanted[w] = stamp;
+							targets++;
+						}
+					}
+				}
+				if (targets == 0) {
+					continue;
+				}
+				witnessSearch(u, v, maxCost, targets, limit);
+				for (int j = 0; j < outSize[v]; j++) {
+					int outEdge = out[v][j];
+					int w = edgeTarget[outEdge];
+					if (contracted[w] || (w == u)) {
+						continue;
+					}
+					double cost = edgeWeight[inEdge] + edgeWeight[outEdge];
+					if ((reached[w] == stamp) && (dist[w] <= cost)) {
+						continue;
+					}
+					count++;
+					if (add) {
+						link(addEdge(u, w, cost, -1, inEdge, outEdge));
+						shortcutCount++;
+					}
+				}
+			}
+			return count;
+		}
+
+		/*
+		 * Bounded search from u in the remaining graph without v,
+		 * stopping once the wanted nodes are settled
+		 */
+		private void witnessSearch(int u, int v, double maxCost, int targets, int limit) {
+			frontier.clear();
+			reached[u] = stamp;
+			dist[u] = 0;
+			frontier.push(u, 0);
+			int settled = 0;
+			while (!frontier.isEmpty() && (settled < limit) && (targets > 0)) {
+				int x = frontier.poll();
+				settled++;
+				if (dist[x] > maxCost) {
+					break;
+				}
+				if (wanted[x] == stamp) {
+					targets--;
+				}
+				for (int i = 0; i < outSize[x]; i++) {
+					int e = out[x][i];
+					int y = edgeTarget[e];
+					if (contracted[y] || (y == v)) {
+						continue;
+					}
+					double d = dist[x] + edgeWeight[e];
+					if ((reached[y] != stamp) || (d < dist[y])) {
+						reached[y] = stamp;
+						dist[y] = d;
+						frontier.push(y, d);
+					}
+				}
+			}
+		}
+
+		private void nextSearch() {
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(reached, 0);
+				Arrays.fill(wanted, 0);
+				stamp = 0;
+			}
+			stamp++;
+		}
+
+		private int addEdge(int source, int target, double weight, int orig, int first, int second) {
+			if (edgeCount == edgeSource.length) {
+				int capacity = 2 * edgeCount;
+				edgeSource = Arrays.copyOf(edgeSource, capacity);
+				edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+				edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+				edgeOrig = Arrays.copyOf(edgeOrig, capacity);
+				edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+				edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+			}
+			edgeSource[edgeCount] = source;
+			edgeTarget[edgeCount] = target;
+			edgeWeight[edgeCount] = weight;
+			edgeOrig[edgeCount] = orig;
+			edgeFirst[edgeCount] = first;
+			edgeSecond[edgeCount] = second;
+			return edgeCount++;
+		}
+
+		// adds the edge to the adjacency of its ends
+		private void link(int e) {
+			int u = edgeSource[e];
+			int v = edgeTarget[e];
+			out[u] = append(out[u], outSize[u]++, e);
+			in[v] = append(in[v], inSize[v]++, e);
+		}
+
+		private static int[] append(int[] list, int size, int value) {
+			if (list == null) {
+				list = new int[4];
+			} else if (size == list.length) {
+				list = Arrays.copyOf(list, 2 * size);
+			}
+			list[size] = value;
+			return list;
+		}
+	}
+
+	/*
+	 * Query workspace, stamped instead of cleared and grown to the
+	 * largest hierarchy it served; it keeps no reference to a hierarchy
+	 */
+	public static final class Workspace {
+
+		private double[][] dist = new double[2][0];
+		private int[][] edge = new int[2][0];
+		private int[][] reached = new int[2][0];
+		private IntMinHeap[] frontier = { new IntMinHeap(0), new IntMinHeap(0) };
+		private int stamp = 0;
+
+		private void prepare(int n) {
+			if (reached[0].length < n) {
+				dist = new double[2][n];
+				edge = new int[2][n];
+				reached = new int[2][n];
+				frontier = new IntMinHeap[] { new IntMinHeap(n), new IntMinHeap(n) };
+				stamp = 0;
+			}
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(reached[0], 0);
+				Arrays.fill(reached[1], 0);
+				stamp = 0;
+			}
+			stamp++;
+		}
+
+		private void reach(int side, int node, double d, int e) {
+			reached[side][node] = stamp;
+			dist[side][node] = d;
+			edge[side][node] = e;
+		}
+	}
+
+	private static final class IntList {
+
+		private int[] values = new int[16];
+		private int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		void reverse() {
+			for (int i = 0, j = size - 1; i < j; i++, j--) {
+				int tmp = values[i];
+				values[i] = values[j];
+				values[j] = tmp;
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package io.nms.client.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * All equal-cost shortest paths from the source of a tree to one target.
+ * The predecessor DAG is rebuilt from the tree distances: an in-edge is
+ * kept when it lies on a shortest path, one per pair of nodes so that
+ * parallel links do not yield the same node sequence twice. Only nodes
+ * leading to the target are visited, and their predecessor edges are
+ * stored as contiguous ranges of one primitive array.
+ */
+public final class EqualCostPaths {
+
+	// relative tolerance on distance sums
+	private static final double EPSILON = 1e-9;
+
+	private final CompactGraph graph;
+	private final int source;
+	private final int target;
+	private final double cost;
+	private final int[] local;
+	private final int[] nodes;
+	private final int[] offsets;
+	private final int[] edges;
+
+	private EqualCostPaths(CompactGraph graph, int source, int target, double cost, 
+			int[] local, int[] nodes, int[] offsets, int[] edges) {
+		this.graph = graph;
+		this.source = source;
+		this.target = target;
+		this.cost = cost;
+		this.local = local;
+		this.nodes = nodes;
+		this.offsets = offsets;
+		this.edges = edges;
+	}
+
+	/*
+	 * Predecessor DAG of the target in the tree, NULL if it is not reachable
+	 */
+	public static EqualCostPaths of(ShortestPathTree tree, RouteMetric metric, int target) {
+		if (!tree.isReachable(target)) {
+			return null;
+		}
+		CompactGraph graph = tree.getGraph();
+		double[] weights = graph.weights(metric);
+		int[] local = new int[graph.nodeCount()];
+		Arrays.fill(local, -1);
+		// last node whose predecessors included each node
+		int[] linkedTo = new int[graph.nodeCount()];
+		Arrays.fill(linkedTo, -1);
+		int[] nodes = new int[16];
+		int[] offsets = new int[17];
+		int[] edges = new int[16];
+		int nodeCount = 0;
+		int edgeCount = 0;
+		local[target] = nodeCount;
+		nodes[nodeCount++] = target;
+		// nodes are expanded in discovery order, so their edges are contiguous
+		for (int i = 0; i < nodeCount; i++) {
+			int v = nodes[i];
+			offsets[i] = edgeCount;
+			if (v == tree.getSource()) {
+				continue;
+			}
+			double d = tree.getDistance(v);
+			for (int j = graph.firstInEdge(v); j < graph.endInEdge(v); j++) {
+				int e = graph.inEdge(j);
+				int u = graph.source(e);
+				if (!tree.isReachable(u) 
+						|| (Math.abs(tree.getDistance(u) + weights[e] - d) > EPSILON * Math.max(1, d))
+						|| (linkedTo[u] == v)) {
+					continue;
+				}
+				linkedTo[u] = v;
+				if (edgeCount == edges.length) {
+					edges = Arrays.copyOf(edges, 2 * edgeCount);
+				}
+				edges[edgeCount++] = e;
+				if (local[u] < 0) {
+					if (nodeCount == nodes.length) {
+						nodes = Arrays.copyOf(nodes, 2 * nodeCount);
+						offsets = Arrays.copyOf(offsets, 2 * nodeCount + 1);
+					}
+					local[u] = nodeCount;
+					nodes[nodeCount++] = u;
+				}
+			}
+		}
+		offsets[nodeCount] = edgeCount;
+		return new EqualCostPaths(graph, tree.getSource(), target, tree.getDistance(target), local, 
+				Arrays.copyOf(nodes, nodeCount), Arrays.copyOf(offsets, nodeCount + 1), 
+				Arrays.copyOf(edges, edgeCount));
+	}
+
+	public double getCost() {
+		return cost;
+	}
+
+	// nodes and edges lying on at least one of the paths, parallel edges counted once
+	public int nodeCount() {
+		return nodes.length;
+	}
+
+	public int edgeCount() {
+		return edges.length;
+	}
+
+	/*
+	 * Up to maxPaths distinct paths, enumerated depth first
+	 * from the target along the predecessor edges
+	 */
+	public List<GraphPath> getPaths(int maxPaths) {
+		List<GraphPath> paths = new ArrayList<GraphPath>();
+		int[] stack = new int[nodes.length];
+		int[] cursor = new int[nodes.length];
+		int[] via = new int[nodes.length];
+		boolean[] onPath = new boolean[nodes.length];
+		int depth = 0;
+		stack[0] = local[target];
+		cursor[0] = offsets[stack[0]];
+		onPath[stack[0]] = true;
+		while ((depth >= 0) && (paths.size() < maxPaths)) {
+			int v = stack[depth];
+			if (nodes[v] == source) {
+				paths.add(toPath(stack, via, depth));
+			} else if (cursor[depth] < offsets[v + 1]) {
+				int e = edges[cursor[depth]++];
+				int u = local[graph.source(e)];
+				// zero-cost cycles are not followed
+				if (!onPath[u]) {
+					via[depth] = e;
+					depth++;
+					stack[depth] = u;
+					cursor[depth] = offsets[u];
+					onPath[u] = true;
+				}
+				continue;
+			}
+			onPath[v] = false;
+			depth--;
+		}
+		return paths;
+	}
+
+	// stack holds the path backwards, from the target to the source
+	private GraphPath toPath(int[] stack, int[] via, int depth) {
+		int[] pathNodes = new int[depth + 1];
+		int[] pathEdges = new int[depth];
+		for (int i = 0; i <= depth; i++) {
+			pathNodes[i] = nodes[stack[depth - i]];
+		}
+		for (int i = 0; i < depth; i++) {
+			pathEdges[i] = via[depth - 1 - i];
+		}
+		return new GraphPath(pathNodes, pathEdges, cost);
+	}
+}
@@ -0,0 +1,59 @@
+package io.nms.client.routing;
+
+/*
+ * Difference between two compact graphs sharing node indexes.
+ * Edge indexes of the previous graph are mapped to the new graph,
+ * -1 for removed edges.
+ */
+public final class GraphChange {
+
+	private final CompactGraph previous;
+	private final CompactGraph graph;
+	private final int[] edgeRemap;
+	private final int[] removedEdges;
+	private final int[] addedEdges;
+	private final boolean[] removedNodes;
+
+	GraphChange(CompactGraph previous, CompactGraph graph, int[] edgeRemap, 
+			int[] removedEdges, int[] addedEdges, boolean[] removedNodes) {
+		this.previous = previous;
+		this.graph = graph;
+		this.edgeRemap = edgeRemap;
+		this.removedEdges = removedEdges;
+		this.addedEdges = addedEdges;
+		this.removedNodes = removedNodes;
+	}
+
+	public CompactGraph getPrevious() {
+		return previous;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	// index of a previous edge in the new graph, -1 if it was removed
+	public int mapEdge(int previousEdge) {
+		return edgeRemap[previousEdge];
+	}
+
+	// removed edges, as indexes of the previous graph
+	public int[] getRemovedEdges() {
+		return removedEdges;
+	}
+
+	// added edges, as indexes of the new graph
+	public int[] getAddedEdges() {
+		return addedEdges;
+	}
+
+	// true if the node of the previous graph was removed
+	public boolean removesNode(int node) {
+		return (node < removedNodes.length) && removedNodes[node];
+	}
+
+	// true if edge weights of the metric may differ for edges kept by the change
+	boolean changesWeights(RouteMetric metric) {
+		return metric.usesCapacity() && (previous.getMaxCapacity() != graph.getMaxCapacity());
+	}
+}
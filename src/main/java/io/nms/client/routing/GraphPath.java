@@ -0,0 +1,40 @@
+package io.nms.client.routing;
+
+import java.util.List;
+
+/*
+ * Path over a compact graph: the nodes it visits, the edges it takes
+ * and its total cost for the metric it was computed with.
+ */
+public final class GraphPath {
+
+	private final int[] nodes;
+	private final int[] edges;
+	private final double cost;
+
+	GraphPath(int[] nodes, int[] edges, double cost) {
+		this.nodes = nodes;
+		this.edges = edges;
+		this.cost = cost;
+	}
+
+	public int[] getNodes() {
+		return nodes;
+	}
+
+	public int[] getEdges() {
+		return edges;
+	}
+
+	public double getCost() {
+		return cost;
+	}
+
+	public int length() {
+		return edges.length;
+	}
+
+	public List<String> toNodeIds(CompactGraph graph) {
+		return graph.toNodeIds(nodes);
+	}
+}
@@ -0,0 +1,105 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Shortest path search on the compact graph using an indexed
+ * binary heap frontier. The graph is not copied; search state
+ * lives in primitive arrays allocated once per instance.
+ */
+public class HeapDijkstraAlgorithm {
+
+	private final CompactGraph graph;
+	private final double[] weights;
+	private final double[] distance;
+	private final int[] predecessor;
+	private final boolean[] settled;
+	private final IntMinHeap frontier;
+
+	public HeapDijkstraAlgorithm(CompactGraph graph) {
+		this(graph, RouteMetric.HOP_COUNT);
+	}
+
+	public HeapDijkstraAlgorithm(CompactGraph graph, RouteMetric metric) {
+		this.graph = graph;
+		this.weights = graph.weights(metric);
+		int n = graph.nodeCount();
+		this.distance = new double[n];
+		this.predecessor = new int[n];
+		this.settled = new boolean[n];
+		this.frontier = new IntMinHeap(n);
+	}
+
+	/*
+	 * Returns the node indexes from source to target, NULL if no path exists
+	 */
+	public int[] getShortestPath(int source, int target) {
+		execute(source, target);
+		return getPath(source, target);
+	}
+
+	/*
+	 * Settles every node reachable from the source
+	 */
+	public ShortestPathTree getShortestPathTree(int source) {
+		execute(source, -1);
+		return new ShortestPathTree(graph, source, distance.clone(), predecessor.clone());
+	}
+
+	/*
+	 * Settles every node reachable from the source and copies the
+	 * distances and predecessor edges into the given rows
+	 */
+	void getShortestPathTree(int source, double[] distances, int[] predecessors, int offset) {
+		execute(source, -1);
+		System.arraycopy(distance, 0, distances, offset, distance.length);
+		System.arraycopy(predecessor, 0, predecessors, offset, predecessor.length);
+	}
+
+	private void execute(int source, int target) {
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessor, -1);
+		Arrays.fill(settled, false);
+		frontier.clear();
+		distance[source] = 0;
+		frontier.push(source, 0);
+		while (!frontier.isEmpty()) {
+			int node = frontier.poll();
+			settled[node] = true;
+			if (node == target) {
+				return;
+			}
+			for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+				int next = graph.target(e);
+				if (settled[next]) {
+					continue;
+				}
+				double d = distance[node] + weights[e];
+				if (d < distance[next]) {
+					distance[next] = d;
+					predecessor[next] = e;
+					frontier.push(next, d);
+				}
+			}
+		}
+	}
+
+	private int[] getPath(int source, int target) {
+		if (!settled[target]) {
+			return null;
+		}
+		int length = 1;
+		for (int step = target; step != source; step = graph.source(predecessor[step])) {
+			length++;
+		}
+		int[] path = new int[length];
+		int step = target;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = step;
+			if (i > 0) {
+				step = graph.source(predecessor[step]);
+			}
+		}
+		return path;
+	}
+}
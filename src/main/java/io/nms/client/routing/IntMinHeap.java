@@ -0,0 +1,108 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Binary min-heap of node indexes keyed by double values,
+ * with decrease-key. Backed by primitive arrays sized once.
+ */
+class IntMinHeap {
+
+	private final int[] heap;
+	private final int[] position;
+	private final double[] keys;
+	private int size = 0;
+
+	IntMinHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int node) {
+		return position[node] >= 0;
+	}
+
+	double minKey() {
+		return keys[heap[0]];
+	}
+
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	// inserts the node or decreases its key
+	void push(int node, double key) {
+		int i = position[node];
+		if (i < 0) {
+			i = size++;
+			heap[i] = node;
+			position[node] = i;
+		} else if (key >= keys[node]) {
+			return;
+		}
+		keys[node] = key;
+		siftUp(i);
+	}
+
+	int poll() {
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int node = heap[i];
+		double key = keys[node];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[heap[parent]] <= key) {
+				break;
+			}
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+
+	private void siftDown(int i) {
+		int node = heap[i];
+		double key = keys[node];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if ((right < size) && (keys[heap[right]] < keys[heap[child]])) {
+				child = right;
+			}
+			if (key <= keys[heap[child]]) {
+				break;
+			}
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+}
@@ -0,0 +1,258 @@
+package io.nms.client.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/*
+ * K best loopless paths between two nodes (Yen), or K link-disjoint
+ * paths of minimum total cost (successive shortest paths on the
+ * residual graph).
+ * One search workspace is shared by all iterations, and the distances
+ * to the target, computed once, guide every spur search as an A*
+ * heuristic: bans only make paths longer, so they stay a lower bound.
+ * Optional constraints exclude nodes and links from all the paths.
+ */
+public class KShortestPaths {
+
+	private final CompactGraph graph;
+	private final double[] weights;
+	private final PathConstraints constraints;
+	private final PathSearch search;
+
+	public KShortestPaths(CompactGraph graph, RouteMetric metric) {
+		this(graph, metric, null);
+	}
+
+	public KShortestPaths(CompactGraph graph, RouteMetric metric, PathConstraints constraints) {
+		this.graph = graph;
+		this.weights = graph.weights(metric);
+		this.constraints = constraints;
+		this.search = new PathSearch(graph, weights, constraints);
+	}
+
+	public List<GraphPath> getShortestPaths(String sourceId, String targetId, int k, boolean disjoint) {
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
+		if ((source < 0) || (target < 0)) {
+			return new ArrayList<GraphPath>();
+		}
+		return disjoint ? getDisjointPaths(source, target, k) : getShortestPaths(source, target, k);
+	}
+
+	/*
+	 * Up to k loopless paths in increasing cost order. Paths differing only
+	 * by parallel links are returned once.
+	 */
+	public List<GraphPath> getShortestPaths(int source, int target, int k) {
+		List<GraphPath> result = new ArrayList<GraphPath>();
+		if ((k <= 0) || (source == target)) {
+			return result;
+		}
+		double[] heuristic = search.distancesTo(target);
+		search.clearBans();
+		GraphPath first = search.search(source, target, heuristic);
+		if (first == null) {
+			return result;
+		}
+
+		List<GraphPath> accepted = new ArrayList<GraphPath>();
+		PriorityQueue<GraphPath> candidates = new PriorityQueue<GraphPath>(
+				(a, b) -> Double.compare(a.getCost(), b.getCost()));
+		Set<String> seenEdges = new HashSet<String>();
+		Set<String> seenNodes = new HashSet<String>();
+		seenEdges.add(Arrays.toString(first.getEdges()));
+		candidates.add(first);
+
+		while ((result.size() < k) && !candidates.isEmpty()) {
+			GraphPath path = candidates.poll();
+			accepted.add(path);
+			if (seenNodes.add(Arrays.toString(path.getNodes()))) {
+				result.add(path);
+				if (result.size() == k) {
+					break;
+				}
+			}
+			// deviate from the path at each of its nodes
+			int[] nodes = path.getNodes();
+			int[] edges = path.getEdges();
+			double rootCost = 0;
+			for (int i = 0; i < edges.length; i++) {
+				search.clearBans();
+				for (int j = 0; j < i; j++) {
+					search.banNode(nodes[j]);
+				}
+				for (GraphPath p : accepted) {
+					if ((p.length() > i) && sameRoot(p.getEdges(), edges, i)) {
+						search.banEdge(p.getEdges()[i]);
+					}
+				}
+				GraphPath spur = search.search(nodes[i], target, heuristic);
+				if (spur != null) {
+					GraphPath candidate = join(nodes, edges, i, rootCost, spur);
+					if (seenEdges.add(Arrays.toString(candidate.getEdges()))) {
+						candidates.add(candidate);
+					}
+				}
+				rootCost += weights[edges[i]];
+			}
+		}
+		return result;
+	}
+
+	private static boolean sameRoot(int[] a, int[] b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static GraphPath join(int[] nodes, int[] edges, int i, double rootCost, GraphPath spur) {
+		int[] n = new int[i + spur.getNodes().length];
+		int[] e = new int[i + spur.length()];
+		System.arraycopy(nodes, 0, n, 0, i);
+		System.arraycopy(spur.getNodes(), 0, n, i, spur.getNodes().length);
+		System.arraycopy(edges, 0, e, 0, i);
+		System.arraycopy(spur.getEdges(), 0, e, i, spur.length());
+		return new GraphPath(n, e, rootCost + spur.getCost());
+	}
+
+	/*
+	 * Up to k paths sharing no link, with minimum total cost, in
+	 * increasing cost order.
+	 * Each round finds a shortest augmenting path in the residual graph,
+	 * where used links may be travelled backwards at negative cost, using
+	 * node potentials to keep reduced costs non-negative for Dijkstra.
+	 */
+	public List<GraphPath> getDisjointPaths(int source, int target, int k) {
+		List<GraphPath> result = new ArrayList<GraphPath>();
+		if ((k <= 0) || (source == target)) {
+			return result;
+		}
+		if ((constraints != null) && (!constraints.allowsNode(source) || !constraints.allowsNode(target))) {
+			return result;
+		}
+		int n = graph.nodeCount();
+		boolean[] used = new boolean[graph.edgeCount()];
+		double[] potential = new double[n];
+		double[] dist = new double[n];
+		int[] predEdge = new int[n];
+		boolean[] backward = new boolean[n];
+		IntMinHeap frontier = new IntMinHeap(n);
+
+		int flow = 0;
+		while (flow < k) {
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			frontier.clear();
+			dist[source] = 0;
+			frontier.push(source, 0);
+			while (!frontier.isEmpty()) {
+				int u = frontier.poll();
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					if (used[e] || ((constraints != null) 
+							&& (!constraints.allowsEdge(e) || !constraints.allowsNode(v)))) {
+						continue;
+					}
+					double d = dist[u] + Math.max(0, weights[e] + potential[u] - potential[v]);
+					if (d < dist[v]) {
+						dist[v] = d;
+						predEdge[v] = e;
+						backward[v] = false;
+						frontier.push(v, d);
+					}
+				}
+				for (int i = graph.firstInEdge(u); i < graph.endInEdge(u); i++) {
+					int e = graph.inEdge(i);
+					int v = graph.source(e);
+					if (!used[e]) {
+						continue;
+					}
+					double d = dist[u] + Math.max(0, -weights[e] + potential[u] - potential[v]);
+					if (d < dist[v]) {
+						dist[v] = d;
+						predEdge[v] = e;
+						backward[v] = true;
+						frontier.push(v, d);
+					}
+				}
+			}
+			if (Double.isInfinite(dist[target])) {
+				break;
+			}
+			for (int v = 0; v < n; v++) {
+				if (!Double.isInfinite(dist[v])) {
+					potential[v] += dist[v];
+				}
+			}
+			for (int v = target; v != source; ) {
+				int e = predEdge[v];
+				if (backward[v]) {
+					used[e] = false;
+					v = graph.target(e);
+				} else {
+					used[e] = true;
+					v = graph.source(e);
+				}
+			}
+			flow++;
+		}
+
+		// split the used links into paths
+		for (int i = 0; i < flow; i++) {
+			GraphPath path = takePath(source, target, used);
+			if (path != null) {
+				result.add(path);
+			}
+		}
+		result.sort((a, b) -> Double.compare(a.getCost(), b.getCost()));
+		return result;
+	}
+
+	// follows used links from the source, cutting any cycle, and releases them
+	private GraphPath takePath(int source, int target, boolean[] used) {
+		List<Integer> nodes = new ArrayList<Integer>();
+		List<Integer> edges = new ArrayList<Integer>();
+		nodes.add(source);
+		int u = source;
+		while (u != target) {
+			int next = -1;
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				if (used[e]) {
+					next = e;
+					break;
+				}
+			}
+			if (next < 0) {
+				return null;
+			}
+			used[next] = false;
+			u = graph.target(next);
+			int seen = nodes.indexOf(u);
+			if (seen >= 0) {
+				// zero cost cycle, drop it
+				nodes.subList(seen + 1, nodes.size()).clear();
+				edges.subList(seen, edges.size()).clear();
+			} else {
+				nodes.add(u);
+				edges.add(next);
+			}
+		}
+		int[] n = new int[nodes.size()];
+		int[] e = new int[edges.size()];
+		double cost = 0;
+		for (int i = 0; i < n.length; i++) {
+			n[i] = nodes.get(i);
+		}
+		for (int i = 0; i < e.length; i++) {
+			e[i] = edges.get(i);
+			cost += weights[e[i]];
+		}
+		return new GraphPath(n, e, cost);
+	}
+}
@@ -0,0 +1,123 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Landmark distances for ALT (A*, landmarks, triangle inequality).
+ * For each landmark L the distances d(L, v) and d(v, L) of every node
+ * are stored, giving the consistent lower bound
+ *   d(v, t) >= max(d(L, t) - d(L, v), d(v, L) - d(t, L))
+ * Landmarks are picked greedily, each one as far as possible from the
+ * previous ones, so the bounds cover the whole graph.
+ */
+public final class LandmarkIndex {
+
+	private final int[] landmarks;
+	private final double[][] from;
+	private final double[][] to;
+
+	private LandmarkIndex(int[] landmarks, double[][] from, double[][] to) {
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+	}
+
+	public static LandmarkIndex build(CompactGraph graph, RouteMetric metric, int count) {
+		double[] weights = graph.weights(metric);
+		int n = graph.nodeCount();
+		int[] picked = new int[count];
+		double[][] from = new double[count][];
+		double[][] to = new double[count][];
+		// distance to the closest landmark, infinite until covered
+		double[] closest = new double[n];
+		Arrays.fill(closest, Double.POSITIVE_INFINITY);
+		int size = 0;
+		int next = firstNode(graph);
+		while ((size < count) && (next >= 0)) {
+			picked[size] = next;
+			from[size] = distances(graph, weights, next, false);
+			to[size] = distances(graph, weights, next, true);
+			for (int v = 0; v < n; v++) {
+				closest[v] = Math.min(closest[v], from[size][v]);
+			}
+			size++;
+			// farthest node, nodes not reached by any landmark first
+			next = -1;
+			double best = 0;
+			for (int v = 0; v < n; v++) {
+				if (graph.containsNode(v) && (closest[v] > best)) {
+					best = closest[v];
+					next = v;
+				}
+			}
+		}
+		return new LandmarkIndex(Arrays.copyOf(picked, size), 
+				Arrays.copyOf(from, size), Arrays.copyOf(to, size));
+	}
+
+	private static int firstNode(CompactGraph graph) {
+		for (int v = 0; v < graph.nodeCount(); v++) {
+			if (graph.containsNode(v)) {
+				return v;
+			}
+		}
+		return -1;
+	}
+
+	private static double[] distances(CompactGraph graph, double[] weights, int root, boolean reverse) {
+		double[] dist = new double[graph.nodeCount()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		IntMinHeap frontier = new IntMinHeap(graph.nodeCount());
+		dist[root] = 0;
+		frontier.push(root, 0);
+		while (!frontier.isEmpty()) {
+			int u = frontier.poll();
+			int first = reverse ? graph.firstInEdge(u) : graph.firstEdge(u);
+			int end = reverse ? graph.endInEdge(u) : graph.endEdge(u);
+			for (int i = first; i < end; i++) {
+				int e = reverse ? graph.inEdge(i) : i;
+				int v = reverse ? graph.source(e) : graph.target(e);
+				double d = dist[u] + weights[e];
+				if (d < dist[v]) {
+					dist[v] = d;
+					frontier.push(v, d);
+				}
+			}
+		}
+		return dist;
+	}
+
+	public int size() {
+		return landmarks.length;
+	}
+
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	/*
+	 * Lower bound of d(v, t), POSITIVE_INFINITY if v cannot reach t
+	 */
+	public double lowerBound(int v, int t) {
+		double bound = 0;
+		for (int i = 0; i < landmarks.length; i++) {
+			double[] f = from[i];
+			double[] b = to[i];
+			if (!Double.isInfinite(f[v])) {
+				// L reaches v, so if v reached t, L would reach t
+				bound = Math.max(bound, f[t] - f[v]);
+			}
+			if (!Double.isInfinite(b[t])) {
+				// t reaches L, so if v reached t, v would reach L
+				bound = Math.max(bound, b[v] - b[t]);
+			}
+		}
+		return bound;
+	}
+
+	// approximate heap size of the distance tables
+	public long getMemoryBytes() {
+		long n = (from.length > 0) ? from[0].length : 0;
+		return 2L * landmarks.length * n * Double.BYTES;
+	}
+}
@@ -0,0 +1,165 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+ * Loop-free alternate next hops (RFC 5286) for every (node, destination)
+ * pair, derived from all-pairs distances.
+ * A neighbour N of S is a loop-free alternate towards D when
+ *   d(N, D) < d(N, S) + d(S, D)
+ * so its own shortest path to D does not come back through S. Alternates
+ * that also avoid the primary next hop P, d(N, D) < d(N, P) + d(P, D),
+ * are preferred, then the cheapest one. Each alternate is stored as an
+ * edge index in an n*n primitive array.
+ */
+public final class LoopFreeAlternates {
+
+	private final AllPairsPaths paths;
+	private final int n;
+	private final int[] alternate;
+
+	private LoopFreeAlternates(AllPairsPaths paths) {
+		this.paths = paths;
+		this.n = paths.nodeCount();
+		this.alternate = new int[n * n];
+		Arrays.fill(alternate, -1);
+	}
+
+	public static LoopFreeAlternates compute(AllPairsPaths paths, ForkJoinPool pool) {
+		LoopFreeAlternates lfa = new LoopFreeAlternates(paths);
+		double[] weights = paths.getGraph().weights(paths.getMetric());
+		pool.submit(() -> IntStream.range(0, lfa.n).parallel()
+				.forEach(s -> lfa.computeRow(s, weights))).join();
+		return lfa;
+	}
+
+	public AllPairsPaths getPaths() {
+		return paths;
+	}
+
+	// alternate edge leaving the node towards the destination, -1 if none
+	public int getAlternateEdge(int node, int destination) {
+		return alternate[node * n + destination];
+	}
+
+	/*
+	 * Path from the node to the destination through its alternate,
+	 * NULL if there is none
+	 */
+	public int[] getRepairPath(int node, int destination) {
+		int e = alternate[node * n + destination];
+		if (e < 0) {
+			return null;
+		}
+		int[] tail = paths.getPath(paths.getGraph().target(e), destination);
+		int[] path = new int[tail.length + 1];
+		path[0] = node;
+		System.arraycopy(tail, 0, path, 1, tail.length);
+		return path;
+	}
+
+	/*
+	 * Path from the node to the destination avoiding the failed edge leaving
+	 * the node: the shortest path if it does not start with that edge,
+	 * the repair path otherwise. NULL if there is none.
+	 */
+	public int[] getRepairPath(int node, int destination, int failedEdge) {
+		if ((node == destination) || !paths.isReachable(node, destination)) {
+			return null;
+		}
+		CompactGraph graph = paths.getGraph();
+		int e = paths.getPredecessorEdge(node, destination);
+		while (graph.source(e) != node) {
+			e = paths.getPredecessorEdge(node, graph.source(e));
+		}
+		if (e != failedEdge) {
+			return paths.getPath(node, destination);
+		}
+		return getRepairPath(node, destination);
+	}
+
+	// share of the reachable (node, destination) pairs having an alternate
+	public double getCoverage() {
+		long reachable = 0;
+		long covered = 0;
+		for (int s = 0; s < n; s++) {
+			for (int d = 0; d < n; d++) {
+				if ((s != d) && paths.isReachable(s, d)) {
+					reachable++;
+					if (alternate[s * n + d] >= 0) {
+						covered++;
+					}
+				}
+			}
+		}
+		return (reachable == 0) ? 0 : (double) covered / reachable;
+	}
+
+	private void computeRow(int s, double[] weights) {
+		CompactGraph graph = paths.getGraph();
+		int[] first = firstHops(s);
+		for (int d = 0; d < n; d++) {
+			if ((d == s) || (first[d] < 0)) {
+				continue;
+			}
+			int primary = first[d];
+			int p = graph.target(primary);
+			double sd = paths.getDistance(s, d);
+			int best = -1;
+			boolean bestProtectsNode = false;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (int e = graph.firstEdge(s); e < graph.endEdge(s); e++) {
+				int v = graph.target(e);
+				if ((e == primary) || (v == s)) {
+					continue;
+				}
+				double vd = paths.getDistance(v, d);
+				if (Double.isInfinite(vd) || !(vd < paths.getDistance(v, s) + sd)) {
+					continue;
+				}
+				boolean protectsNode = (v != p) && (vd < paths.getDistance(v, p) + paths.getDistance(p, d));
+				double cost = weights[e] + vd;
+				if ((protectsNode && !bestProtectsNode) 
+						|| ((protectsNode == bestProtectsNode) && (cost < bestCost))) {
+					best = e;
+					bestProtectsNode = protectsNode;
+					bestCost = cost;
+				}
+			}
+			alternate[s * n + d] = best;
+		}
+	}
+
+	// first edge of the shortest path from s to every node, -1 if none
+	private int[] firstHops(int s) {
+		CompactGraph graph = paths.getGraph();
+		int[] first = new int[n];
+		boolean[] known = new boolean[n];
+		int[] chain = new int[n];
+		first[s] = -1;
+		known[s] = true;
+		for (int d = 0; d < n; d++) {
+			int size = 0;
+			int v = d;
+			// climb the tree of s up to a node already solved
+			while (!known[v]) {
+				if (!paths.isReachable(s, v)) {
+					first[v] = -1;
+					known[v] = true;
+					break;
+				}
+				chain[size++] = v;
+				v = graph.source(paths.getPredecessorEdge(s, v));
+			}
+			for (int i = size - 1; i >= 0; i--) {
+				int u = chain[i];
+				int e = paths.getPredecessorEdge(s, u);
+				first[u] = (graph.source(e) == s) ? e : first[graph.source(e)];
+				known[u] = true;
+			}
+		}
+		return first;
+	}
+}
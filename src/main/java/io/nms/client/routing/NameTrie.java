@@ -0,0 +1,163 @@
+package io.nms.client.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Component-wise trie over the registered name prefixes: "/a/b/c" has
+ * the components a, b and c. A trie node keeps the prefixes registered
+ * with its exact name (one per owning node), so the longest match of a
+ * name is found in time proportional to its number of components.
+ * Not thread-safe, it is used from the routing verticle only.
+ */
+public class NameTrie {
+
+	private static final class TrieNode {
+		final TrieNode parent;
+		final String component;
+		final HashMap<String, TrieNode> children = new HashMap<String, TrieNode>(4);
+		// registered prefixes by _id
+		final LinkedHashMap<String, JsonObject> prefixes = new LinkedHashMap<String, JsonObject>(2);
+
+		TrieNode(TrieNode parent, String component) {
+			this.parent = parent;
+			this.component = component;
+		}
+	}
+
+	private final TrieNode root = new TrieNode(null, "");
+	private final LinkedHashMap<String, TrieNode> byId = new LinkedHashMap<String, TrieNode>();
+	private final HashMap<String, Set<String>> byNode = new HashMap<String, Set<String>>();
+	private boolean loaded = false;
+
+	// replaces the content with the prefixes read from storage
+	public void load(JsonArray docs) {
+		root.children.clear();
+		root.prefixes.clear();
+		byId.clear();
+		byNode.clear();
+		for (Object doc : docs) {
+			put((JsonObject) doc);
+		}
+		loaded = true;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public int size() {
+		return byId.size();
+	}
+
+	public JsonArray getAll() {
+		JsonArray docs = new JsonArray();
+		for (Map.Entry<String, TrieNode> entry : byId.entrySet()) {
+			docs.add(entry.getValue().prefixes.get(entry.getKey()));
+		}
+		return docs;
+	}
+
+	// adds or replaces a prefix, prefixes without _id or name are ignored
+	public void put(JsonObject prefix) {
+		String id = prefix.getString("_id", "");
+		if (id.isEmpty() || !prefix.containsKey("name")) {
+			return;
+		}
+		remove(id);
+		TrieNode t = root;
+		for (String component : components(prefix.getString("name"))) {
+			TrieNode parent = t;
+			t = parent.children.computeIfAbsent(component, c -> new TrieNode(parent, c));
+		}
+		t.prefixes.put(id, prefix);
+		byId.put(id, t);
+		String node = prefix.getString("node", "");
+		if (!node.isEmpty()) {
+			byNode.computeIfAbsent(node, k -> new LinkedHashSet<String>()).add(id);
+		}
+	}
+
+	// removed prefix, NULL if unknown
+	public JsonObject remove(String id) {
+		TrieNode t = byId.remove(id);
+		if (t == null) {
+			return null;
+		}
+		JsonObject prefix = t.prefixes.remove(id);
+		Set<String> ids = byNode.get(prefix.getString("node", ""));
+		if (ids != null) {
+			ids.remove(id);
+			if (ids.isEmpty()) {
+				byNode.remove(prefix.getString("node", ""));
+			}
+		}
+		// drop the branch left without prefixes
+		while ((t.parent != null) && t.prefixes.isEmpty() && t.children.isEmpty()) {
+			t.parent.children.remove(t.component);
+			t = t.parent;
+		}
+		return prefix;
+	}
+
+	// removes the prefixes registered by a node
+	public List<JsonObject> removeByNode(String nodeId) {
+		Set<String> ids = byNode.get(nodeId);
+		if (ids == null) {
+			return Collections.emptyList();
+		}
+		List<JsonObject> removed = new ArrayList<JsonObject>(ids.size());
+		for (String id : new ArrayList<String>(ids)) {
+			removed.add(remove(id));
+		}
+		return removed;
+	}
+
+	/*
+	 * Prefixes registered with the longest registered prefix of the name,
+	 * empty if none matches
+	 */
+	public List<JsonObject> lookup(String name) {
+		TrieNode t = root;
+		TrieNode match = root.prefixes.isEmpty() ? null : root;
+		for (String component : components(name)) {
+			t = t.children.get(component);
+			if (t == null) {
+				break;
+			}
+			if (!t.prefixes.isEmpty()) {
+				match = t;
+			}
+		}
+		if (match == null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<JsonObject>(match.prefixes.values());
+	}
+
+	// non-empty components of a name, "/a//b/" gives a and b
+	public static List<String> components(String name) {
+		List<String> components = new ArrayList<String>();
+		int start = 0;
+		while (start < name.length()) {
+			int end = name.indexOf('/', start);
+			if (end < 0) {
+				end = name.length();
+			}
+			if (end > start) {
+				components.add(name.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return components;
+	}
+}
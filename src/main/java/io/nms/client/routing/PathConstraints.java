@@ -0,0 +1,90 @@
+package io.nms.client.routing;
+
+import java.util.BitSet;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Nodes and links a path must avoid, as a filter over one compact graph.
+ * Excluded links include the links below the minimum capacity (links
+ * without capacity count as 0). The graph is not copied: the filter is
+ * a bit per node and per edge, checked by the searches.
+ */
+public final class PathConstraints {
+
+	private final CompactGraph graph;
+	private final BitSet excludedNodes;
+	private final BitSet excludedEdges;
+	private final double minCapacity;
+
+	private PathConstraints(CompactGraph graph, BitSet excludedNodes, BitSet excludedEdges, double minCapacity) {
+		this.graph = graph;
+		this.excludedNodes = excludedNodes;
+		this.excludedEdges = excludedEdges;
+		this.minCapacity = minCapacity;
+	}
+
+	/*
+	 * Reads {"exclude": {"nodes": [ids], "links": [ids]}, "minCapacity": c}.
+	 * Unknown ids are ignored. Returns NULL if nothing is constrained.
+	 */
+	public static PathConstraints fromJson(CompactGraph graph, JsonObject params) {
+		JsonObject exclude = params.getJsonObject("exclude", new JsonObject());
+		JsonArray nodes = exclude.getJsonArray("nodes", new JsonArray());
+		JsonArray links = exclude.getJsonArray("links", new JsonArray());
+		double minCapacity = params.getDouble("minCapacity", 0.0);
+		if (minCapacity < 0) {
+			throw new IllegalArgumentException("minCapacity must not be negative");
+		}
+		if (nodes.isEmpty() && links.isEmpty() && (minCapacity == 0)) {
+			return null;
+		}
+		BitSet excludedNodes = new BitSet(graph.nodeCount());
+		BitSet excludedEdges = new BitSet(graph.edgeCount());
+		for (int i = 0; i < nodes.size(); i++) {
+			int u = graph.indexOf(String.valueOf(nodes.getValue(i)));
+			if (u >= 0) {
+				excludedNodes.set(u);
+			}
+		}
+		for (int i = 0; i < links.size(); i++) {
+			int e = graph.edgeOf(String.valueOf(links.getValue(i)));
+			if (e >= 0) {
+				excludedEdges.set(e);
+			}
+		}
+		if (minCapacity > 0) {
+			for (int e = 0; e < graph.edgeCount(); e++) {
+				if (graph.capacity(e) < minCapacity) {
+					excludedEdges.set(e);
+				}
+			}
+		}
+		return new PathConstraints(graph, excludedNodes, excludedEdges, minCapacity);
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public double getMinCapacity() {
+		return minCapacity;
+	}
+
+	public boolean allowsNode(int node) {
+		return !excludedNodes.get(node);
+	}
+
+	public boolean allowsEdge(int edge) {
+		return !excludedEdges.get(edge);
+	}
+
+	public int excludedNodeCount() {
+		return excludedNodes.cardinality();
+	}
+
+	public int excludedEdgeCount() {
+		return excludedEdges.cardinality();
+	}
+}
@@ -0,0 +1,176 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Shortest path distances between a set of sources and a set of targets.
+ * One search is run per source, or per target on the reversed links
+ * when there are fewer targets, and each search stops once all the
+ * nodes of the other side are settled.
+ */
+public final class PathMatrix {
+
+	private final CompactGraph graph;
+	private final double[] weights;
+	private final int[] sources;
+	private final int[] targets;
+	private final boolean reverse;
+	private final double[] distance;
+	private final int[][] paths;
+	private long settledCount = 0;
+
+	// search workspace, stamped instead of cleared
+	private final double[] dist;
+	private final int[] edge;
+	private final int[] reached;
+	private final int[] settled;
+	private final int[] wanted;
+	private int stamp = 0;
+	private final IntMinHeap frontier;
+
+	private PathMatrix(CompactGraph graph, RouteMetric metric, int[] sources, int[] targets, 
+			boolean withPaths) {
+		this.graph = graph;
+		this.weights = graph.weights(metric);
+		this.sources = sources;
+		this.targets = targets;
+		this.reverse = targets.length < sources.length;
+		this.distance = new double[sources.length * targets.length];
+		this.paths = withPaths ? new int[sources.length * targets.length][] : null;
+		int n = graph.nodeCount();
+		dist = new double[n];
+		edge = new int[n];
+		reached = new int[n];
+		settled = new int[n];
+		wanted = new int[n];
+		Arrays.fill(wanted, -1);
+		frontier = new IntMinHeap(n);
+	}
+
+	/*
+	 * Sources and targets are node indexes without duplicates
+	 */
+	public static PathMatrix compute(CompactGraph graph, RouteMetric metric, int[] sources, int[] targets, 
+			boolean withPaths) {
+		PathMatrix matrix = new PathMatrix(graph, metric, sources, targets, withPaths);
+		matrix.execute();
+		return matrix;
+	}
+
+	public int[] getSources() {
+		return sources;
+	}
+
+	public int[] getTargets() {
+		return targets;
+	}
+
+	// true if the searches were run from the targets
+	public boolean isReverse() {
+		return reverse;
+	}
+
+	// total number of nodes settled by the searches
+	public long getSettledCount() {
+		return settledCount;
+	}
+
+	// POSITIVE_INFINITY if the target is not reachable from the source
+	public double getDistance(int i, int j) {
+		return distance[i * targets.length + j];
+	}
+
+	/*
+	 * Node indexes from sources[i] to targets[j], NULL if no path exists
+	 * or paths were not requested
+	 */
+	public int[] getPath(int i, int j) {
+		return (paths == null) ? null : paths[i * targets.length + j];
+	}
+
+	private void execute() {
+		int[] origins = reverse ? targets : sources;
+		int[] others = reverse ? sources : targets;
+		for (int k = 0; k < others.length; k++) {
+			wanted[others[k]] = k;
+		}
+		for (int o = 0; o < origins.length; o++) {
+			search(origins[o], others.length);
+			for (int k = 0; k < others.length; k++) {
+				int cell = reverse ? (k * targets.length + o) : (o * targets.length + k);
+				int other = others[k];
+				boolean found = (settled[other] == stamp);
+				distance[cell] = found ? dist[other] : Double.POSITIVE_INFINITY;
+				if ((paths != null) && found) {
+					paths[cell] = tracePath(origins[o], other);
+				}
+			}
+		}
+	}
+
+	// settles nodes from the origin until the wanted ones are all settled
+	private void search(int origin, int remaining) {
+		nextSearch();
+		frontier.clear();
+		reach(origin, 0, -1);
+		frontier.push(origin, 0);
+		while (!frontier.isEmpty() && (remaining > 0)) {
+			int node = frontier.poll();
+			settled[node] = stamp;
+			settledCount++;
+			if (wanted[node] >= 0) {
+				remaining--;
+			}
+			int end = reverse ? graph.endInEdge(node) : graph.endEdge(node);
+			for (int i = reverse ? graph.firstInEdge(node) : graph.firstEdge(node); i < end; i++) {
+				int e = reverse ? graph.inEdge(i) : i;
+				int next = reverse ? graph.source(e) : graph.target(e);
+				if (settled[next] == stamp) {
+					continue;
+				}
+				double d = dist[node] + weights[e];
+				if ((reached[next] != stamp) || (d < dist[next])) {
+					reach(next, d, e);
+					frontier.push(next, d);
+				}
+			}
+		}
+	}
+
+	// path between the origin and a node settled by the last search, in link direction
+	private int[] tracePath(int origin, int node) {
+		int length = 1;
+		for (int step = node; step != origin; step = previous(step)) {
+			length++;
+		}
+		int[] path = new int[length];
+		int step = node;
+		for (int i = 0; i < length; i++) {
+			path[reverse ? i : (length - 1 - i)] = step;
+			if (i < length - 1) {
+				step = previous(step);
+			}
+		}
+		return path;
+	}
+
+	// node before this one on the search tree
+	private int previous(int node) {
+		return reverse ? graph.target(edge[node]) : graph.source(edge[node]);
+	}
+
+	private void reach(int node, double d, int e) {
+		reached[node] = stamp;
+		dist[node] = d;
+		edge[node] = e;
+	}
+
+	private void nextSearch() {
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			stamp = 0;
+		}
+		stamp++;
+	}
+}
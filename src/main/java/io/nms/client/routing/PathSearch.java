@@ -0,0 +1,182 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Reusable point-to-point search over a compact graph.
+ * Search state and bans are stamped with a counter instead of being
+ * cleared, so repeated searches on the same graph cost only the nodes
+ * they visit. Bans stay active until clearBans(); constraints, if any,
+ * apply to every search.
+ */
+class PathSearch {
+
+	private final CompactGraph graph;
+	private final double[] weights;
+	private final PathConstraints constraints;
+
+	private final double[] distance;
+	private final int[] predecessor;
+	private final int[] reached;
+	private final int[] settled;
+	private int searchStamp = 0;
+
+	private final int[] bannedNodes;
+	private final int[] bannedEdges;
+	private int banStamp = 1;
+
+	private final IntMinHeap frontier;
+	private int settledCount = 0;
+
+	PathSearch(CompactGraph graph, double[] weights) {
+		this(graph, weights, null);
+	}
+
+	PathSearch(CompactGraph graph, double[] weights, PathConstraints constraints) {
+		this.graph = graph;
+		this.weights = weights;
+		this.constraints = constraints;
+		int n = graph.nodeCount();
+		distance = new double[n];
+		predecessor = new int[n];
+		reached = new int[n];
+		settled = new int[n];
+		bannedNodes = new int[n];
+		bannedEdges = new int[graph.edgeCount()];
+		frontier = new IntMinHeap(n);
+	}
+
+	void clearBans() {
+		if (banStamp == Integer.MAX_VALUE) {
+			Arrays.fill(bannedNodes, 0);
+			Arrays.fill(bannedEdges, 0);
+			banStamp = 0;
+		}
+		banStamp++;
+	}
+
+	void banNode(int node) {
+		bannedNodes[node] = banStamp;
+	}
+
+	void banEdge(int edge) {
+		bannedEdges[edge] = banStamp;
+	}
+
+	boolean isBannedNode(int node) {
+		return (bannedNodes[node] == banStamp) || ((constraints != null) && !constraints.allowsNode(node));
+	}
+
+	boolean isBannedEdge(int edge) {
+		return (bannedEdges[edge] == banStamp) || ((constraints != null) && !constraints.allowsEdge(edge));
+	}
+
+	// number of nodes settled by the last search
+	int getSettledCount() {
+		return settledCount;
+	}
+
+	/*
+	 * Shortest path avoiding the banned nodes and edges, NULL if none.
+	 * The heuristic, if any, must be a consistent lower bound of the
+	 * distance to the target (A* search); infinite values prune nodes.
+	 */
+	GraphPath search(int source, int target, double[] heuristic) {
+		if (isBannedNode(source) || isBannedNode(target)) {
+			return null;
+		}
+		nextSearch();
+		frontier.clear();
+		settledCount = 0;
+		reach(source, 0, -1);
+		frontier.push(source, bound(source, 0, heuristic));
+		while (!frontier.isEmpty()) {
+			int node = frontier.poll();
+			settled[node] = searchStamp;
+			settledCount++;
+			if (node == target) {
+				return getPath(source, target);
+			}
+			for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+				int next = graph.target(e);
+				if ((settled[next] == searchStamp) || isBannedEdge(e) || isBannedNode(next)) {
+					continue;
+				}
+				double d = distance[node] + weights[e];
+				if ((reached[next] != searchStamp) || (d < distance[next])) {
+					double key = bound(next, d, heuristic);
+					if (Double.isInfinite(key)) {
+						continue;
+					}
+					reach(next, d, e);
+					frontier.push(next, key);
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Distances from every node to the target, ignoring bans but not constraints.
+	 * POSITIVE_INFINITY for nodes that cannot reach it.
+	 */
+	double[] distancesTo(int target) {
+		double[] dist = new double[graph.nodeCount()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		frontier.clear();
+		dist[target] = 0;
+		frontier.push(target, 0);
+		while (!frontier.isEmpty()) {
+			int node = frontier.poll();
+			for (int i = graph.firstInEdge(node); i < graph.endInEdge(node); i++) {
+				int e = graph.inEdge(i);
+				int prev = graph.source(e);
+				if ((constraints != null) && (!constraints.allowsEdge(e) || !constraints.allowsNode(prev))) {
+					continue;
+				}
+				double d = dist[node] + weights[e];
+				if (d < dist[prev]) {
+					dist[prev] = d;
+					frontier.push(prev, d);
+				}
+			}
+		}
+		return dist;
+	}
+
+	private static double bound(int node, double d, double[] heuristic) {
+		return (heuristic == null) ? d : d + heuristic[node];
+	}
+
+	private void reach(int node, double d, int edge) {
+		reached[node] = searchStamp;
+		distance[node] = d;
+		predecessor[node] = edge;
+	}
+
+	private void nextSearch() {
+		if (searchStamp == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			searchStamp = 0;
+		}
+		searchStamp++;
+	}
+
+	private GraphPath getPath(int source, int target) {
+		int length = 0;
+		for (int step = target; step != source; step = graph.source(predecessor[step])) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		int[] edges = new int[length];
+		int step = target;
+		nodes[length] = target;
+		for (int i = length - 1; i >= 0; i--) {
+			edges[i] = predecessor[step];
+			step = graph.source(edges[i]);
+			nodes[i] = step;
+		}
+		return new GraphPath(nodes, edges, distance[target]);
+	}
+}
@@ -0,0 +1,200 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Point-to-point shortest path searches that stop as soon as the
+ * target distance is known, instead of settling the whole graph:
+ * bidirectional Dijkstra, and A* guided by landmark lower bounds.
+ * Search state is stamped, so one instance serves many queries on
+ * the same graph.
+ */
+public class PointToPointSearch {
+
+	private final CompactGraph graph;
+	private final double[] weights;
+
+	private final double[] forwardDist;
+	private final int[] forwardPred;
+	private final int[] forwardReached;
+	private final double[] backwardDist;
+	private final int[] backwardPred;
+	private final int[] backwardReached;
+	private final IntMinHeap forwardFrontier;
+	private final IntMinHeap backwardFrontier;
+	private int stamp = 0;
+	private int settledCount = 0;
+
+	public PointToPointSearch(CompactGraph graph, RouteMetric metric) {
+		this.graph = graph;
+		this.weights = graph.weights(metric);
+		int n = graph.nodeCount();
+		forwardDist = new double[n];
+		forwardPred = new int[n];
+		forwardReached = new int[n];
+		backwardDist = new double[n];
+		backwardPred = new int[n];
+		backwardReached = new int[n];
+		forwardFrontier = new IntMinHeap(n);
+		backwardFrontier = new IntMinHeap(n);
+	}
+
+	// number of nodes settled by the last search
+	public int getSettledCount() {
+		return settledCount;
+	}
+
+	/*
+	 * Bidirectional Dijkstra, NULL if no path exists.
+	 * Stops when the two frontiers together cannot improve the best
+	 * meeting point found so far.
+	 */
+	public GraphPath bidirectional(int source, int target) {
+		nextSearch();
+		reach(forwardDist, forwardPred, forwardReached, source, 0, -1);
+		reach(backwardDist, backwardPred, backwardReached, target, 0, -1);
+		forwardFrontier.push(source, 0);
+		backwardFrontier.push(target, 0);
+		double best = (source == target) ? 0 : Double.POSITIVE_INFINITY;
+		int meet = (source == target) ? source : -1;
+
+		while (!forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+			if (forwardFrontier.minKey() + backwardFrontier.minKey() >= best) {
+				break;
+			}
+			settledCount++;
+			if (forwardFrontier.minKey() <= backwardFrontier.minKey()) {
+				int u = forwardFrontier.poll();
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					double d = forwardDist[u] + weights[e];
+					if ((forwardReached[v] != stamp) || (d < forwardDist[v])) {
+						reach(forwardDist, forwardPred, forwardReached, v, d, e);
+						forwardFrontier.push(v, d);
+						if ((backwardReached[v] == stamp) && (d + backwardDist[v] < best)) {
+							best = d + backwardDist[v];
+							meet = v;
+						}
+					}
+				}
+			} else {
+				int u = backwardFrontier.poll();
+				for (int i = graph.firstInEdge(u); i < graph.endInEdge(u); i++) {
+					int e = graph.inEdge(i);
+					int v = graph.source(e);
+					double d = backwardDist[u] + weights[e];
+					if ((backwardReached[v] != stamp) || (d < backwardDist[v])) {
+						reach(backwardDist, backwardPred, backwardReached, v, d, e);
+						backwardFrontier.push(v, d);
+						if ((forwardReached[v] == stamp) && (d + forwardDist[v] < best)) {
+							best = d + forwardDist[v];
+							meet = v;
+						}
+					}
+				}
+			}
+		}
+		if (meet < 0) {
+			return null;
+		}
+
+		// forward half up to the meeting node, then backward half to the target
+		int length = 0;
+		for (int v = meet; v != source; v = graph.source(forwardPred[v])) {
+			length++;
+		}
+		int split = length;
+		for (int v = meet; v != target; v = graph.target(backwardPred[v])) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		int[] edges = new int[length];
+		int v = meet;
+		nodes[split] = meet;
+		for (int i = split - 1; i >= 0; i--) {
+			edges[i] = forwardPred[v];
+			v = graph.source(edges[i]);
+			nodes[i] = v;
+		}
+		v = meet;
+		for (int i = split; i < length; i++) {
+			edges[i] = backwardPred[v];
+			v = graph.target(edges[i]);
+			nodes[i + 1] = v;
+		}
+		return new GraphPath(nodes, edges, best);
+	}
+
+	/*
+	 * A* search using the landmark lower bounds, NULL if no path exists.
+	 * The landmarks must have been built for the same graph and metric.
+	 */
+	public GraphPath astar(int source, int target, LandmarkIndex landmarks) {
+		nextSearch();
+		if (Double.isInfinite(landmarks.lowerBound(source, target))) {
+			return null;
+		}
+		reach(forwardDist, forwardPred, forwardReached, source, 0, -1);
+		forwardFrontier.push(source, landmarks.lowerBound(source, target));
+		// backward reached marks settled nodes in this search
+		while (!forwardFrontier.isEmpty()) {
+			int u = forwardFrontier.poll();
+			backwardReached[u] = stamp;
+			settledCount++;
+			if (u == target) {
+				return getForwardPath(source, target);
+			}
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				int v = graph.target(e);
+				if (backwardReached[v] == stamp) {
+					continue;
+				}
+				double d = forwardDist[u] + weights[e];
+				if ((forwardReached[v] != stamp) || (d < forwardDist[v])) {
+					double bound = landmarks.lowerBound(v, target);
+					if (Double.isInfinite(bound)) {
+						continue;
+					}
+					reach(forwardDist, forwardPred, forwardReached, v, d, e);
+					forwardFrontier.push(v, d + bound);
+				}
+			}
+		}
+		return null;
+	}
+
+	private GraphPath getForwardPath(int source, int target) {
+		int length = 0;
+		for (int v = target; v != source; v = graph.source(forwardPred[v])) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		int[] edges = new int[length];
+		int v = target;
+		nodes[length] = target;
+		for (int i = length - 1; i >= 0; i--) {
+			edges[i] = forwardPred[v];
+			v = graph.source(edges[i]);
+			nodes[i] = v;
+		}
+		return new GraphPath(nodes, edges, forwardDist[target]);
+	}
+
+	private void reach(double[] dist, int[] pred, int[] reached, int node, double d, int edge) {
+		reached[node] = stamp;
+		dist[node] = d;
+		pred[node] = edge;
+	}
+
+	private void nextSearch() {
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(forwardReached, 0);
+			Arrays.fill(backwardReached, 0);
+			stamp = 0;
+		}
+		stamp++;
+		settledCount = 0;
+		forwardFrontier.clear();
+		backwardFrontier.clear();
+	}
+}
@@ -0,0 +1,225 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+
+/*
+ * Reachability between nodes of one compact graph.
+ * Weak components come from union-find, strong components from an
+ * iterative Tarjan search. Tarjan numbers the strong components in
+ * reverse topological order, so a link always goes from a component to
+ * one with a lower or equal number. Most queries are answered in O(1):
+ * different weak components or a lower source number mean unreachable,
+ * the same strong component means reachable. Otherwise the condensation
+ * DAG is searched between the two numbers only.
+ */
+public final class ReachabilityIndex {
+
+	private final CompactGraph graph;
+	private final int[] weak;
+	private final int weakCount;
+	private final int[] strong;
+	private final int strongCount;
+	// condensation DAG, one entry per distinct link between strong components
+	private final int[] dagOffsets;
+	private final int[] dagTargets;
+
+	private ReachabilityIndex(CompactGraph graph, int[] weak, int weakCount, int[] strong, int strongCount, 
+			int[] dagOffsets, int[] dagTargets) {
+		this.graph = graph;
+		this.weak = weak;
+		this.weakCount = weakCount;
+		this.strong = strong;
+		this.strongCount = strongCount;
+		this.dagOffsets = dagOffsets;
+		this.dagTargets = dagTargets;
+	}
+
+	public static ReachabilityIndex build(CompactGraph graph) {
+		int n = graph.nodeCount();
+
+		// weak components: union-find over the links
+		int[] parent = new int[n];
+		for (int u = 0; u < n; u++) {
+			parent[u] = u;
+		}
+		for (int e = 0; e < graph.edgeCount(); e++) {
+			int a = find(parent, graph.source(e));
+			int b = find(parent, graph.target(e));
+			if (a != b) {
+				parent[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+		int[] weak = new int[n];
+		int weakCount = 0;
+		for (int u = 0; u < n; u++) {
+			int root = find(parent, u);
+			weak[u] = (root == u) ? weakCount++ : weak[root];
+		}
+
+		// strong components: iterative Tarjan
+		int[] strong = new int[n];
+		int[] index = new int[n];
+		int[] low = new int[n];
+		Arrays.fill(index, -1);
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callNode = new int[n];
+		int[] callEdge = new int[n];
+		int stackSize = 0;
+		int counter = 0;
+		int strongCount = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callNode[0] = root;
+			callEdge[0] = graph.firstEdge(root);
+			index[root] = low[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int u = callNode[depth];
+				if (callEdge[depth] < graph.endEdge(u)) {
+					int v = graph.target(callEdge[depth]++);
+					if (index[v] < 0) {
+						index[v] = low[v] = counter++;
+						stack[stackSize++] = v;
+						onStack[v] = true;
+						depth++;
+						callNode[depth] = v;
+						callEdge[depth] = graph.firstEdge(v);
+					} else if (onStack[v]) {
+						low[u] = Math.min(low[u], index[v]);
+					}
+					continue;
+				}
+				if (low[u] == index[u]) {
+					int v;
+					do {
+						v = stack[--stackSize];
+						onStack[v] = false;
+						strong[v] = strongCount;
+					} while (v != u);
+					strongCount++;
+				}
+				depth--;
+				if (depth >= 0) {
+					int caller = callNode[depth];
+					low[caller] = Math.min(low[caller], low[u]);
+				}
+			}
+		}
+
+		// condensation DAG, members grouped by component with a counting sort
+		int[] start = new int[strongCount + 1];
+		for (int u = 0; u < n; u++) {
+			start[strong[u] + 1]++;
+		}
+		for (int c = 0; c < strongCount; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(start, strongCount);
+		for (int u = 0; u < n; u++) {
+			members[next[strong[u]]++] = u;
+		}
+		int[] dagOffsets = new int[strongCount + 1];
+		int[] dagTargets = new int[16];
+		int size = 0;
+		int[] last = new int[strongCount];
+		Arrays.fill(last, -1);
+		for (int c = 0; c < strongCount; c++) {
+			dagOffsets[c] = size;
+			for (int i = start[c]; i < start[c + 1]; i++) {
+				int u = members[i];
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int d = strong[graph.target(e)];
+					if ((d == c) || (last[d] == c)) {
+						continue;
+					}
+					last[d] = c;
+					if (size == dagTargets.length) {
+						dagTargets = Arrays.copyOf(dagTargets, 2 * size);
+					}
+					dagTargets[size++] = d;
+				}
+			}
+		}
+		dagOffsets[strongCount] = size;
+		return new ReachabilityIndex(graph, weak, weakCount, strong, strongCount, 
+				dagOffsets, Arrays.copyOf(dagTargets, size));
+	}
+
+	private static int find(int[] parent, int u) {
+		while (parent[u] != u) {
+			parent[u] = parent[parent[u]];
+			u = parent[u];
+		}
+		return u;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	// weak and strong component counts, deleted node indexes included
+	public int getWeakCount() {
+		return weakCount;
+	}
+
+	public int getStrongCount() {
+		return strongCount;
+	}
+
+	public int getWeakComponent(int node) {
+		return weak[node];
+	}
+
+	public int getStrongComponent(int node) {
+		return strong[node];
+	}
+
+	// true if links connect the nodes, ignoring their direction
+	public boolean isConnected(int source, int target) {
+		return weak[source] == weak[target];
+	}
+
+	public boolean isStronglyConnected(int source, int target) {
+		return strong[source] == strong[target];
+	}
+
+	public boolean isReachable(int source, int target) {
+		if (weak[source] != weak[target]) {
+			return false;
+		}
+		int from = strong[source];
+		int to = strong[target];
+		if (from == to) {
+			return true;
+		}
+		if (from < to) {
+			return false;
+		}
+		// components outside ]to, from] cannot lead to the target
+		boolean[] visited = new boolean[from - to];
+		int[] stack = new int[from - to];
+		int size = 0;
+		stack[size++] = from;
+		visited[from - to - 1] = true;
+		while (size > 0) {
+			int c = stack[--size];
+			for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+				int d = dagTargets[i];
+				if (d == to) {
+					return true;
+				}
+				if ((d > to) && !visited[d - to - 1]) {
+					visited[d - to - 1] = true;
+					stack[size++] = d;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,148 @@
+package io.nms.client.routing;
+
+import java.util.Locale;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Link cost used by route computations, either a single metric or a
+ * weighted combination of metrics. Parsed from the "metric" parameter:
+ *   "metric" : "latency"
+ *   "metric" : { "latency" : 1, "utilisation" : 10 }
+ * Supported metrics are hops, latency, capacity, cost and utilisation.
+ * Capacity costs maxCapacity / capacity, so the largest links cost 1.
+ * Utilisation costs 1 / (1 - utilisation), which grows as links congest.
+ */
+public final class RouteMetric {
+
+	// metric names, also the metric fields of a link in the topology JSON
+	public static final String HOPS = "hops";
+	public static final String LATENCY = "latency";
+	public static final String CAPACITY = "capacity";
+	public static final String COST = "cost";
+	public static final String UTILISATION = "utilisation";
+
+	public static final RouteMetric HOP_COUNT = new RouteMetric(1, 0, 0, 0, 0);
+
+	// utilisation is capped so the cost of a saturated link stays finite
+	private static final double MAX_UTILISATION = 0.99;
+
+	private final double hops;
+	private final double latency;
+	private final double capacity;
+	private final double cost;
+	private final double utilisation;
+	private final String key;
+
+	private RouteMetric(double hops, double latency, double capacity, double cost, double utilisation) {
+		this.hops = hops;
+		this.latency = latency;
+		this.capacity = capacity;
+		this.cost = cost;
+		this.utilisation = utilisation;
+		this.key = String.format(Locale.ROOT, "%s=%s,%s=%s,%s=%s,%s=%s,%s=%s",
+				HOPS, hops, LATENCY, latency, CAPACITY, capacity,
+				COST, cost, UTILISATION, utilisation);
+	}
+
+	/*
+	 * Parses a metric name or an object of metric weights.
+	 * NULL gives the hop count. Throws IllegalArgumentException on
+	 * unknown metrics, negative weights or an empty combination.
+	 */
+	public static RouteMetric fromJson(Object jMetric) {
+		if (jMetric == null) {
+			return HOP_COUNT;
+		}
+		JsonObject weights;
+		if (jMetric instanceof String) {
+			weights = new JsonObject().put((String)jMetric, 1.0);
+		} else if (jMetric instanceof JsonObject) {
+			weights = (JsonObject)jMetric;
+		} else {
+			throw new IllegalArgumentException("metric must be a name or an object of weights");
+		}
+		double[] w = new double[5];
+		for (String name : weights.fieldNames()) {
+			int i = indexOf(name);
+			if (i < 0) {
+				throw new IllegalArgumentException("unknown metric: " + name);
+			}
+			Object value = weights.getValue(name);
+			if (!(value instanceof Number) || (((Number)value).doubleValue() < 0)) {
+				throw new IllegalArgumentException("metric weight must be a non-negative number: " + name);
+			}
+			w[i] = ((Number)value).doubleValue();
+		}
+		if (w[0] + w[1] + w[2] + w[3] + w[4] <= 0) {
+			throw new IllegalArgumentException("metric must have at least one positive weight");
+		}
+		return new RouteMetric(w[0], w[1], w[2], w[3], w[4]);
+	}
+
+	private static int indexOf(String name) {
+		switch (name) {
+		case HOPS:
+			return 0;
+		case LATENCY:
+			return 1;
+		case CAPACITY:
+			return 2;
+		case COST:
+			return 3;
+		case UTILISATION:
+			return 4;
+		default:
+			return -1;
+		}
+	}
+
+	// canonical form, equal for equal metrics
+	public String getKey() {
+		return key;
+	}
+
+	// capacity costs are relative to the largest capacity of the graph
+	public boolean usesCapacity() {
+		return capacity > 0;
+	}
+
+	public boolean isHopCount() {
+		return (latency == 0) && (capacity == 0) && (cost == 0) && (utilisation == 0);
+	}
+
+	// cost of one link given its metrics and the largest capacity of the graph
+	double linkCost(double linkLatency, double linkCapacity, double linkCost, 
+			double linkUtilisation, double maxCapacity) {
+		double w = hops + latency * linkLatency + cost * linkCost;
+		if (capacity > 0) {
+			// links with unknown capacity cost as much as the largest ones
+			w += capacity * (((linkCapacity > 0) && (maxCapacity > 0)) ? maxCapacity / linkCapacity : 1.0);
+		}
+		if (utilisation > 0) {
+			w += utilisation / (1.0 - Math.min(linkUtilisation, MAX_UTILISATION));
+		}
+		return w;
+	}
+
+	@Override
+	public int hashCode() {
+		return key.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+		return key.equals(((RouteMetric)obj).key);
+	}
+
+	@Override
+	public String toString() {
+		return key;
+	}
+}
@@ -0,0 +1,191 @@
+package io.nms.client.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * In-memory copy of the stored routes keyed by _id, with secondary
+ * indexes node -> routes, link -> routes and prefix -> routes.
+ * A link is the hop between two consecutive nodes of a path; the
+ * primary path, the backup paths and the equal-cost paths are indexed.
+ * Not thread-safe, it is used from the routing verticle only;
+ * returned routes are shared and must not be modified.
+ */
+public class RouteTable {
+
+	private final LinkedHashMap<String, JsonObject> routes = new LinkedHashMap<String, JsonObject>();
+	private final HashMap<String, Set<String>> byNode = new HashMap<String, Set<String>>();
+	private final HashMap<String, Set<String>> byLink = new HashMap<String, Set<String>>();
+	private final HashMap<String, Set<String>> byPrefix = new HashMap<String, Set<String>>();
+	private boolean loaded = false;
+
+	// replaces the content with the routes read from storage
+	public void load(JsonArray docs) {
+		routes.clear();
+		byNode.clear();
+		byLink.clear();
+		byPrefix.clear();
+		for (Object doc : docs) {
+			put((JsonObject) doc);
+		}
+		loaded = true;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public int size() {
+		return routes.size();
+	}
+
+	// NULL if unknown
+	public JsonObject get(String id) {
+		return routes.get(id);
+	}
+
+	public JsonArray getAll() {
+		return new JsonArray(new ArrayList<Object>(routes.values()));
+	}
+
+	// adds or replaces a route, routes without _id are ignored
+	public void put(JsonObject route) {
+		String id = route.getString("_id", "");
+		if (id.isEmpty()) {
+			return;
+		}
+		remove(id);
+		routes.put(id, route);
+		index(byPrefix, route.getString("prefix", ""), id);
+		for (String node : nodesOf(route)) {
+			index(byNode, node, id);
+		}
+		for (String link : linksOf(route)) {
+			index(byLink, link, id);
+		}
+	}
+
+	// removed route, NULL if unknown
+	public JsonObject remove(String id) {
+		JsonObject route = routes.remove(id);
+		if (route == null) {
+			return null;
+		}
+		unindex(byPrefix, route.getString("prefix", ""), id);
+		for (String node : nodesOf(route)) {
+			unindex(byNode, node, id);
+		}
+		for (String link : linksOf(route)) {
+			unindex(byLink, link, id);
+		}
+		return route;
+	}
+
+	// routes starting, ending or passing through the node
+	public List<JsonObject> getByNode(String nodeId) {
+		return lookup(byNode, nodeId);
+	}
+
+	// routes crossing a link from source to target
+	public List<JsonObject> getByLink(String sourceId, String targetId) {
+		return lookup(byLink, linkKey(sourceId, targetId));
+	}
+
+	public List<JsonObject> getByPrefix(String prefix) {
+		return lookup(byPrefix, prefix);
+	}
+
+	public List<JsonObject> removeByNode(String nodeId) {
+		return removeAll(getByNode(nodeId));
+	}
+
+	public List<JsonObject> removeByLink(String sourceId, String targetId) {
+		return removeAll(getByLink(sourceId, targetId));
+	}
+
+	public List<JsonObject> removeByPrefix(String prefix) {
+		return removeAll(getByPrefix(prefix));
+	}
+
+	private List<JsonObject> lookup(HashMap<String, Set<String>> index, String key) {
+		Set<String> ids = index.get(key);
+		if (ids == null) {
+			return Collections.emptyList();
+		}
+		List<JsonObject> result = new ArrayList<JsonObject>(ids.size());
+		for (String id : ids) {
+			result.add(routes.get(id));
+		}
+		return result;
+	}
+
+	private List<JsonObject> removeAll(List<JsonObject> found) {
+		for (JsonObject route : found) {
+			remove(route.getString("_id"));
+		}
+		return found;
+	}
+
+	// primary path, then the backup and equal-cost paths
+	public static List<JsonArray> pathsOf(JsonObject route) {
+		List<JsonArray> paths = new ArrayList<JsonArray>();
+		paths.add(route.getJsonArray("path", new JsonArray()));
+		for (String key : new String[] { "backupPaths", "ecmpPaths" }) {
+			for (Object path : route.getJsonArray(key, new JsonArray())) {
+				paths.add((JsonArray) path);
+			}
+		}
+		return paths;
+	}
+
+	private static Set<String> nodesOf(JsonObject route) {
+		Set<String> nodes = new LinkedHashSet<String>();
+		nodes.add(route.getString("fromNode", ""));
+		nodes.add(route.getString("targetNode", ""));
+		for (JsonArray path : pathsOf(route)) {
+			for (Object node : path) {
+				nodes.add(String.valueOf(node));
+			}
+		}
+		nodes.remove("");
+		return nodes;
+	}
+
+	private static Set<String> linksOf(JsonObject route) {
+		Set<String> links = new LinkedHashSet<String>();
+		for (JsonArray path : pathsOf(route)) {
+			for (int i = 0; i + 1 < path.size(); i++) {
+				links.add(linkKey(String.valueOf(path.getValue(i)), String.valueOf(path.getValue(i + 1))));
+			}
+		}
+		return links;
+	}
+
+	private static String linkKey(String sourceId, String targetId) {
+		return sourceId + "\n" + targetId;
+	}
+
+	private static void index(HashMap<String, Set<String>> index, String key, String id) {
+		if (!key.isEmpty()) {
+			index.computeIfAbsent(key, k -> new LinkedHashSet<String>()).add(id);
+		}
+	}
+
+	private static void unindex(HashMap<String, Set<String>> index, String key, String id) {
+		Set<String> ids = index.get(key);
+		if (ids != null) {
+			ids.remove(id);
+			if (ids.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package io.nms.client.routing;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Single-source shortest path tree over one topology snapshot.
+ * Holds the distance and the predecessor edge of every node,
+ * and is never modified once built. A tree can be carried over to
+ * the next graph version by repairing only the nodes the change
+ * affects.
+ */
+public final class ShortestPathTree {
+
+	private final CompactGraph graph;
+	private final int source;
+	private final double[] distance;
+	private final int[] predecessor;
+
+	ShortestPathTree(CompactGraph graph, int source, double[] distance, int[] predecessor) {
+		this.graph = graph;
+		this.source = source;
+		this.distance = distance;
+		this.predecessor = predecessor;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public int getSource() {
+		return source;
+	}
+
+	public boolean isReachable(int node) {
+		return !Double.isInfinite(distance[node]);
+	}
+
+	// POSITIVE_INFINITY if the node is not reachable
+	public double getDistance(int node) {
+		return distance[node];
+	}
+
+	// edge reaching the node in the tree, -1 for the source and unreachable nodes
+	public int getPredecessorEdge(int node) {
+		return predecessor[node];
+	}
+
+	/*
+	 * Returns the node indexes from the source to the target, NULL if no path exists
+	 */
+	public int[] getPath(int target) {
+		if (!isReachable(target)) {
+			return null;
+		}
+		int length = 1;
+		for (int step = target; step != source; step = graph.source(predecessor[step])) {
+			length++;
+		}
+		int[] path = new int[length];
+		int step = target;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = step;
+			if (i > 0) {
+				step = graph.source(predecessor[step]);
+			}
+		}
+		return path;
+	}
+
+	public List<String> getPathById(String targetId) {
+		int target = graph.indexOf(targetId);
+		if (target < 0) {
+			return null;
+		}
+		int[] path = getPath(target);
+		return (path == null) ? null : graph.toNodeIds(path);
+	}
+
+	/*
+	 * Tree of the same source over the changed graph, or NULL if it cannot
+	 * be repaired (source removed, or edge weights changed by the change).
+	 * Removed tree edges detach subtrees: their nodes are reset and searched
+	 * again from the rest of the tree. Added edges only propagate the
+	 * distance decreases they cause.
+	 */
+	public ShortestPathTree update(GraphChange change, RouteMetric metric) {
+		if ((change.getPrevious() != graph) || change.removesNode(source) 
+				|| change.changesWeights(metric)) {
+			return null;
+		}
+		CompactGraph next = change.getGraph();
+		double[] weights = next.weights(metric);
+		int n = next.nodeCount();
+		double[] dist = Arrays.copyOf(distance, n);
+		int[] pred = Arrays.copyOf(predecessor, n);
+		for (int v = distance.length; v < n; v++) {
+			dist[v] = Double.POSITIVE_INFINITY;
+			pred[v] = -1;
+		}
+		for (int v = 0; v < distance.length; v++) {
+			if (pred[v] >= 0) {
+				pred[v] = change.mapEdge(pred[v]);
+			}
+		}
+		IntMinHeap frontier = new IntMinHeap(n);
+
+		// nodes below removed tree edges, found through the previous tree
+		int[] affected = new int[distance.length];
+		boolean[] isAffected = new boolean[n];
+		int count = 0;
+		for (int e : change.getRemovedEdges()) {
+			int v = graph.target(e);
+			if ((predecessor[v] == e) && !isAffected[v]) {
+				isAffected[v] = true;
+				affected[count++] = v;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			int u = affected[i];
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				int v = graph.target(e);
+				if ((predecessor[v] == e) && !isAffected[v]) {
+					isAffected[v] = true;
+					affected[count++] = v;
+				}
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			dist[affected[i]] = Double.POSITIVE_INFINITY;
+			pred[affected[i]] = -1;
+		}
+		// reattach them from the unaffected part of the tree
+		for (int i = 0; i < count; i++) {
+			int v = affected[i];
+			for (int j = next.firstInEdge(v); j < next.endInEdge(v); j++) {
+				int e = next.inEdge(j);
+				int u = next.source(e);
+				if (isAffected[u]) {
+					continue;
+				}
+				double d = dist[u] + weights[e];
+				if (d < dist[v]) {
+					dist[v] = d;
+					pred[v] = e;
+				}
+			}
+			if (!Double.isInfinite(dist[v])) {
+				frontier.push(v, dist[v]);
+			}
+		}
+		propagate(next, weights, dist, pred, frontier);
+
+		// added edges may shorten paths
+		for (int e : change.getAddedEdges()) {
+			int v = next.target(e);
+			double d = dist[next.source(e)] + weights[e];
+			if (d < dist[v]) {
+				dist[v] = d;
+				pred[v] = e;
+				frontier.push(v, d);
+			}
+		}
+		propagate(next, weights, dist, pred, frontier);
+
+		return new ShortestPathTree(next, source, dist, pred);
+	}
+
+	private static void propagate(CompactGraph graph, double[] weights, 
+			double[] dist, int[] pred, IntMinHeap frontier) {
+		while (!frontier.isEmpty()) {
+			int u = frontier.poll();
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				int v = graph.target(e);
+				double d = dist[u] + weights[e];
+				if (d < dist[v]) {
+					dist[v] = d;
+					pred[v] = e;
+					frontier.push(v, d);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package io.nms.client.routing;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Bounded LRU cache of shortest path trees keyed by
+ * (source, topology version, metric). Entries of older topology
+ * versions are dropped when a newer snapshot is queried or on
+ * invalidate(), or repaired for the new version by update().
+ */
+public class ShortestPathTreeCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Key, ShortestPathTree> trees;
+	private long version = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong repairs = new AtomicLong();
+
+	public ShortestPathTreeCache(int capacity) {
+		this.capacity = capacity;
+		this.trees = new LinkedHashMap<Key, ShortestPathTree>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ShortestPathTree> eldest) {
+				if (size() > ShortestPathTreeCache.this.capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/*
+	 * Returns the tree rooted at the source, computing it on a miss.
+	 * NULL if the source does not exist in the snapshot.
+	 */
+	public ShortestPathTree getTree(TopologySnapshot snapshot, String sourceId, RouteMetric metric) {
+		int source = snapshot.getGraph().indexOf(sourceId);
+		if (source < 0) {
+			return null;
+		}
+		return getTree(snapshot, source, metric);
+	}
+
+	public ShortestPathTree getTree(TopologySnapshot snapshot, int source, RouteMetric metric) {
+		Key key = new Key(source, snapshot.getVersion(), metric);
+		ShortestPathTree tree = lookup(key);
+		if (tree != null) {
+			hits.incrementAndGet();
+			return tree;
+		}
+		misses.incrementAndGet();
+		// computed outside the lock, concurrent misses may compute the same tree
+		tree = new HeapDijkstraAlgorithm(snapshot.getGraph(), metric).getShortestPathTree(source);
+		store(key, tree);
+		return tree;
+	}
+
+	private synchronized ShortestPathTree lookup(Key key) {
+		if (key.version > version) {
+			version = key.version;
+			trees.keySet().removeIf(k -> k.version < version);
+		}
+		return trees.get(key);
+	}
+
+	private synchronized void store(Key key, ShortestPathTree tree) {
+		if ((capacity > 0) && (key.version >= version)) {
+			trees.put(key, tree);
+		}
+	}
+
+	// drops every tree computed before the given topology version
+	public synchronized void invalidate(long newVersion) {
+		if (newVersion > version) {
+			version = newVersion;
+		}
+		trees.keySet().removeIf(k -> k.version < version);
+	}
+
+	/*
+	 * Carries the trees of the previous snapshot over to the next one,
+	 * repairing them for the graph change. Trees that cannot be repaired
+	 * are dropped.
+	 */
+	public synchronized void update(TopologySnapshot previous, TopologySnapshot next, GraphChange change) {
+		List<Map.Entry<Key, ShortestPathTree>> current = new ArrayList<Map.Entry<Key, ShortestPathTree>>();
+		for (Map.Entry<Key, ShortestPathTree> entry : trees.entrySet()) {
+			if (entry.getKey().version == previous.getVersion()) {
+				current.add(new AbstractMap.SimpleEntry<Key, ShortestPathTree>(entry));
+			}
+		}
+		invalidate(next.getVersion());
+		// least recently used first, to keep the access order
+		for (Map.Entry<Key, ShortestPathTree> entry : current) {
+			Key key = entry.getKey();
+			ShortestPathTree tree = entry.getValue().update(change, key.metric);
+			if (tree != null) {
+				repairs.incrementAndGet();
+				trees.put(new Key(key.source, next.getVersion(), key.metric), tree);
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return trees.size();
+	}
+
+	public JsonObject getStats() {
+		return new JsonObject()
+				.put("capacity", capacity)
+				.put("size", size())
+				.put("hits", hits.get())
+				.put("misses", misses.get())
+				.put("evictions", evictions.get())
+				.put("repairs", repairs.get());
+	}
+
+	private static final class Key {
+		private final int source;
+		private final long version;
+		private final RouteMetric metric;
+
+		Key(int source, long version, RouteMetric metric) {
+			this.source = source;
+			this.version = version;
+			this.metric = metric;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = 31 * source + Long.hashCode(version);
+			return 31 * result + metric.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if ((obj == null) || (getClass() != obj.getClass())) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return (source == other.source) && (version == other.version) 
+					&& metric.equals(other.metric);
+		}
+	}
+}
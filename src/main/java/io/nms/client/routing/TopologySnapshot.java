@@ -0,0 +1,92 @@
+package io.nms.client.routing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Immutable view of the topology at a given version.
+ * A snapshot is never modified once published, so any number of
+ * path computations can read it concurrently without copying.
+ * Indexes derived from the graph, such as landmarks, are computed once
+ * per snapshot and shared the same way.
+ */
+public final class TopologySnapshot {
+
+	private final long version;
+	private final CompactGraph graph;
+	private final ConcurrentHashMap<RouteMetric, LandmarkIndex> landmarks = 
+			new ConcurrentHashMap<RouteMetric, LandmarkIndex>();
+	private final ConcurrentHashMap<RouteMetric, AllPairsPaths> allPairs = 
+			new ConcurrentHashMap<RouteMetric, AllPairsPaths>();
+	private final ConcurrentHashMap<RouteMetric, ContractionHierarchy> hierarchies = 
+			new ConcurrentHashMap<RouteMetric, ContractionHierarchy>();
+	private final ConcurrentHashMap<RouteMetric, LoopFreeAlternates> alternates = 
+			new ConcurrentHashMap<RouteMetric, LoopFreeAlternates>();
+	private volatile ReachabilityIndex reachability = null;
+
+	public TopologySnapshot(long version, CompactGraph graph) {
+		this.version = version;
+		this.graph = graph;
+	}
+
+	public static TopologySnapshot empty() {
+		return new TopologySnapshot(0, new CompactGraph());
+	}
+
+	// snapshot following this one
+	public TopologySnapshot next(CompactGraph graph) {
+		return new TopologySnapshot(version + 1, graph);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	// components of the graph, built on first use
+	public ReachabilityIndex getReachability() {
+		ReachabilityIndex index = reachability;
+		if (index == null) {
+			index = ReachabilityIndex.build(graph);
+			reachability = index;
+		}
+		return index;
+	}
+
+	// landmark index for the metric, built on first use
+	public LandmarkIndex getLandmarks(RouteMetric metric, int count) {
+		return landmarks.computeIfAbsent(metric, k -> LandmarkIndex.build(graph, k, count));
+	}
+
+	// landmark index if already built, NULL otherwise; never waits for a build
+	public LandmarkIndex getLandmarksIfReady(RouteMetric metric) {
+		return landmarks.get(metric);
+	}
+
+	// all-pairs paths for the metric, computed on the pool on first use
+	public AllPairsPaths getAllPairsPaths(RouteMetric metric, ForkJoinPool pool) {
+		return allPairs.computeIfAbsent(metric, k -> AllPairsPaths.compute(graph, k, pool));
+	}
+
+	// loop-free alternates for the metric, computed with the all-pairs paths on first use
+	public LoopFreeAlternates getLoopFreeAlternates(RouteMetric metric, ForkJoinPool pool) {
+		return alternates.computeIfAbsent(metric, 
+				k -> LoopFreeAlternates.compute(getAllPairsPaths(k, pool), pool));
+	}
+
+	// contraction hierarchy for the metric, NULL until built
+	public ContractionHierarchy getHierarchy(RouteMetric metric) {
+		return hierarchies.get(metric);
+	}
+
+	public ContractionHierarchy buildHierarchy(RouteMetric metric) {
+		return hierarchies.computeIfAbsent(metric, k -> ContractionHierarchy.build(graph, k));
+	}
+
+	public boolean isSet() {
+		return graph.isSet();
+	}
+}
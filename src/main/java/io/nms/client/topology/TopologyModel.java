@@ -0,0 +1,206 @@
+package io.nms.client.topology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Write-through copy of the stored topology: nodes and links ordered
+ * by _id, nodes by name and links by end node. Link ends ("source",
+ * "target") refer to node Ids. Pages start after a cursor, the _id of
+ * the last document of the previous page, so they stay consistent
+ * while the topology changes.
+ * Not thread-safe, it is used from the topology verticle only;
+ * returned documents are shared and must not be modified.
+ */
+public class TopologyModel {
+
+	private final TreeMap<String, JsonObject> nodes = new TreeMap<String, JsonObject>();
+	private final TreeMap<String, JsonObject> links = new TreeMap<String, JsonObject>();
+	private final HashMap<String, String> nodeIdByName = new HashMap<String, String>();
+	private final HashMap<String, Set<String>> linksByNode = new HashMap<String, Set<String>>();
+	private boolean loaded = false;
+
+	// replaces the content with the topology read from storage, {"nodes": [], "links": []}
+	public void load(JsonObject jTopology) {
+		nodes.clear();
+		links.clear();
+		nodeIdByName.clear();
+		linksByNode.clear();
+		for (Object node : jTopology.getJsonArray("nodes", new JsonArray())) {
+			putNode((JsonObject) node);
+		}
+		for (Object link : jTopology.getJsonArray("links", new JsonArray())) {
+			putLink((JsonObject) link);
+		}
+		loaded = true;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public int nodeCount() {
+		return nodes.size();
+	}
+
+	public int linkCount() {
+		return links.size();
+	}
+
+	/*---------------- nodes ----------------*/
+
+	// NULL if unknown
+	public JsonObject getNode(String id) {
+		return nodes.get(id);
+	}
+
+	// NULL if unknown
+	public JsonObject getNodeByName(String name) {
+		String id = nodeIdByName.get(name);
+		return (id == null) ? null : nodes.get(id);
+	}
+
+	// node given by Id or name, NULL if unknown
+	public JsonObject resolveNode(String ref) {
+		JsonObject node = nodes.get(ref);
+		return (node != null) ? node : getNodeByName(ref);
+	}
+
+	public JsonArray getNodes() {
+		return new JsonArray(new ArrayList<Object>(nodes.values()));
+	}
+
+	// {"docs": [], "cursor": ""}, cursor is only set if more nodes follow
+	public JsonObject getNodePage(String cursor, int limit) {
+		return page(nodes, cursor, limit);
+	}
+
+	// adds or replaces a node, nodes without _id are ignored
+	public void putNode(JsonObject node) {
+		String id = node.getString("_id", "");
+		if (id.isEmpty()) {
+			return;
+		}
+		JsonObject previous = nodes.put(id, node);
+		if (previous != null) {
+			nodeIdByName.remove(previous.getString("name", ""), id);
+		}
+		if (!node.getString("name", "").isEmpty()) {
+			nodeIdByName.put(node.getString("name"), id);
+		}
+	}
+
+	// removes the node and its links, NULL if unknown
+	public JsonObject removeNode(String id) {
+		JsonObject node = nodes.remove(id);
+		if (node == null) {
+			return null;
+		}
+		nodeIdByName.remove(node.getString("name", ""), id);
+		for (JsonObject link : getLinksOf(id)) {
+			removeLink(link.getString("_id"));
+		}
+		return node;
+	}
+
+	/*---------------- links ----------------*/
+
+	// NULL if unknown
+	public JsonObject getLink(String id) {
+		return links.get(id);
+	}
+
+	public JsonArray getLinks() {
+		return new JsonArray(new ArrayList<Object>(links.values()));
+	}
+
+	// {"docs": [], "cursor": ""}, cursor is only set if more links follow
+	public JsonObject getLinkPage(String cursor, int limit) {
+		return page(links, cursor, limit);
+	}
+
+	// links starting or ending at the node
+	public List<JsonObject> getLinksOf(String nodeId) {
+		Set<String> ids = linksByNode.get(nodeId);
+		if (ids == null) {
+			return Collections.emptyList();
+		}
+		List<JsonObject> result = new ArrayList<JsonObject>(ids.size());
+		for (String id : ids) {
+			result.add(links.get(id));
+		}
+		return result;
+	}
+
+	// adds or replaces a link, links without _id are ignored
+	public void putLink(JsonObject link) {
+		String id = link.getString("_id", "");
+		if (id.isEmpty()) {
+			return;
+		}
+		removeLink(id);
+		links.put(id, link);
+		index(link.getString("source", ""), id);
+		index(link.getString("target", ""), id);
+	}
+
+	// NULL if unknown
+	public JsonObject removeLink(String id) {
+		JsonObject link = links.remove(id);
+		if (link == null) {
+			return null;
+		}
+		unindex(link.getString("source", ""), id);
+		unindex(link.getString("target", ""), id);
+		return link;
+	}
+
+	// {"nodes": [], "links": []} as returned by storage
+	public JsonObject toJson() {
+		return new JsonObject()
+				.put("nodes", getNodes())
+				.put("links", getLinks());
+	}
+
+	// up to limit documents with an _id after the cursor, "" for the first page
+	private static JsonObject page(TreeMap<String, JsonObject> docs, String cursor, int limit) {
+		JsonArray page = new JsonArray();
+		String last = null;
+		for (JsonObject doc : docs.tailMap(cursor, false).values()) {
+			if (page.size() == limit) {
+				break;
+			}
+			page.add(doc);
+			last = doc.getString("_id");
+		}
+		JsonObject result = new JsonObject().put("docs", page);
+		if ((last != null) && (docs.higherKey(last) != null)) {
+			result.put("cursor", last);
+		}
+		return result;
+	}
+
+	private void index(String nodeId, String linkId) {
+		if (!nodeId.isEmpty()) {
+			linksByNode.computeIfAbsent(nodeId, k -> new LinkedHashSet<String>()).add(linkId);
+		}
+	}
+
+	private void unindex(String nodeId, String linkId) {
+		Set<String> ids = linksByNode.get(nodeId);
+		if (ids != null) {
+			ids.remove(linkId);
+			if (ids.isEmpty()) {
+				linksByNode.remove(nodeId);
+			}
+		}
+	}
+}
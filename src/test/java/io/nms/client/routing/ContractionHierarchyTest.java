@@ -0,0 +1,119 @@
+package io.nms.client.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Hierarchy queries against plain Dijkstra on random graphs,
+ * with and without core nodes
+ */
+public class ContractionHierarchyTest {
+
+	private static final double EPSILON = 1e-9;
+	private static final RouteMetric[] METRICS = { RouteMetric.HOP_COUNT, RouteMetric.fromJson(RouteMetric.LATENCY) };
+
+	@Test
+	public void matchesDijkstraOnRandomGraphs() {
+		Random random = new Random(1);
+		for (RouteMetric metric : METRICS) {
+			for (int seed = 0; seed < 10; seed++) {
+				CompactGraph graph = new CompactGraph(TestGraphs.random(80, 240, seed));
+				check(graph, metric, ContractionHierarchy.build(graph, metric), random, 300);
+			}
+		}
+	}
+
+	@Test
+	public void matchesDijkstraWithCoreNodes() {
+		Random random = new Random(2);
+		for (RouteMetric metric : METRICS) {
+			for (int seed = 0; seed < 5; seed++) {
+				CompactGraph graph = new CompactGraph(withCluster(200, 40, seed));
+				ContractionHierarchy ch = ContractionHierarchy.build(graph, metric);
+				assertTrue("cluster nodes are left in the core", ch.getCoreSize() > 0);
+				check(graph, metric, ch, random, 500);
+			}
+		}
+	}
+
+	@Test
+	public void sharesOneWorkspaceAcrossHierarchies() {
+		Random random = new Random(3);
+		ContractionHierarchy.Workspace ws = new ContractionHierarchy.Workspace();
+		for (int seed = 0; seed < 10; seed++) {
+			// sizes go up and down so the workspace is reused larger than needed
+			int n = (seed % 2 == 0) ? 120 : 30;
+			CompactGraph graph = new CompactGraph(TestGraphs.random(n, 3 * n, seed));
+			ContractionHierarchy ch = ContractionHierarchy.build(graph, RouteMetric.HOP_COUNT);
+			HeapDijkstraAlgorithm dijkstra = new HeapDijkstraAlgorithm(graph);
+			for (int q = 0; q < 100; q++) {
+				int source = random.nextInt(n);
+				int target = random.nextInt(n);
+				checkPath(graph, RouteMetric.HOP_COUNT, dijkstra.getShortestPathTree(source), target,
+						ch.getShortestPath(source, target, ws));
+			}
+		}
+	}
+
+	@Test
+	public void sameSourceAndTarget() {
+		CompactGraph graph = new CompactGraph(TestGraphs.random(20, 60, 4));
+		GraphPath path = ContractionHierarchy.build(graph, RouteMetric.HOP_COUNT).getShortestPath(5, 5);
+		assertNotNull(path);
+		assertEquals(0, path.length());
+		assertEquals(0, path.getCost(), EPSILON);
+	}
+
+	// random graph whose first nodes are linked both ways to each other, above the core degree
+	private static JsonObject withCluster(int n, int cluster, long seed) {
+		Random random = new Random(seed);
+		JsonObject graph = TestGraphs.random(n, 2 * n, seed);
+		for (int a = 0; a < cluster; a++) {
+			for (int b = a + 1; b < cluster; b++) {
+				TestGraphs.addBoth(graph, "c" + a + "-" + b, a, b, 1 + random.nextInt(5));
+			}
+		}
+		return graph;
+	}
+
+	private static void check(CompactGraph graph, RouteMetric metric, ContractionHierarchy ch,
+			Random random, int queries) {
+		HeapDijkstraAlgorithm dijkstra = new HeapDijkstraAlgorithm(graph, metric);
+		for (int q = 0; q < queries; q++) {
+			int source = random.nextInt(graph.nodeCount());
+			int target = random.nextInt(graph.nodeCount());
+			checkPath(graph, metric, dijkstra.getShortestPathTree(source), target, ch.getShortestPath(source, target));
+		}
+	}
+
+	// same cost as the tree, made of original links chained from the source to the target
+	private static void checkPath(CompactGraph graph, RouteMetric metric, ShortestPathTree tree, int target,
+			GraphPath path) {
+		if (!tree.isReachable(target)) {
+			assertNull(path);
+			return;
+		}
+		assertNotNull(path);
+		assertEquals(tree.getDistance(target), path.getCost(), EPSILON);
+		int[] nodes = path.getNodes();
+		int[] edges = path.getEdges();
+		assertEquals(tree.getSource(), nodes[0]);
+		assertEquals(target, nodes[nodes.length - 1]);
+		assertEquals(nodes.length, edges.length + 1);
+		double cost = 0;
+		for (int i = 0; i < edges.length; i++) {
+			assertEquals(nodes[i], graph.source(edges[i]));
+			assertEquals(nodes[i + 1], graph.target(edges[i]));
+			cost += TestGraphs.weight(graph, metric, edges[i]);
+		}
+		assertEquals(tree.getDistance(target), cost, EPSILON);
+	}
+}
@@ -0,0 +1,168 @@
+package io.nms.client.routing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Equal-cost path enumeration: parallel links, the path cap and
+ * the distinct node sequences of shortest paths in random graphs
+ */
+public class EqualCostPathsTest {
+
+	private static final double EPSILON = 1e-9;
+	// default cap of the routing service
+	private static final int ECMP_MAX_PATHS = 16;
+
+	@Test
+	public void parallelLinksGiveOnePath() {
+		// two equal-cost branches, each made of two parallel links per hop
+		JsonObject json = TestGraphs.nodes(4);
+		TestGraphs.addLink(json, "a1", 0, 1, 1);
+		TestGraphs.addLink(json, "a2", 0, 1, 1);
+		TestGraphs.addLink(json, "b1", 1, 3, 1);
+		TestGraphs.addLink(json, "b2", 1, 3, 1);
+		TestGraphs.addLink(json, "c1", 0, 2, 1);
+		TestGraphs.addLink(json, "c2", 0, 2, 1);
+		TestGraphs.addLink(json, "d", 2, 3, 1);
+		CompactGraph graph = new CompactGraph(json);
+		EqualCostPaths ecmp = of(graph, RouteMetric.HOP_COUNT, 0, 3);
+		List<GraphPath> paths = ecmp.getPaths(ECMP_MAX_PATHS);
+		assertEquals(2, paths.size());
+		assertEquals(4, ecmp.edgeCount());
+		Set<String> sequences = new HashSet<String>();
+		for (GraphPath path : paths) {
+			checkPath(graph, path, 0, 3, 2);
+			sequences.add(Arrays.toString(path.getNodes()));
+		}
+		assertEquals(new HashSet<String>(Arrays.asList("[0, 1, 3]", "[0, 2, 3]")), sequences);
+	}
+
+	@Test
+	public void cheaperParallelLinkOnly() {
+		JsonObject json = TestGraphs.nodes(2);
+		TestGraphs.addLink(json, "slow", 0, 1, 5);
+		TestGraphs.addLink(json, "fast", 0, 1, 2);
+		CompactGraph graph = new CompactGraph(json);
+		RouteMetric latency = RouteMetric.fromJson(RouteMetric.LATENCY);
+		List<GraphPath> paths = of(graph, latency, 0, 1).getPaths(ECMP_MAX_PATHS);
+		assertEquals(1, paths.size());
+		assertArrayEquals(new int[] { graph.edgeOf("fast") }, paths.get(0).getEdges());
+		assertEquals(2, paths.get(0).getCost(), EPSILON);
+	}
+
+	@Test
+	public void pathsAreCapped() {
+		// ladder of 6 diamonds: 64 equal-cost paths
+		int diamonds = 6;
+		JsonObject json = TestGraphs.nodes(3 * diamonds + 1);
+		for (int i = 0; i < diamonds; i++) {
+			int from = 3 * i;
+			TestGraphs.addLink(json, "u" + i, from, from + 1, 1);
+			TestGraphs.addLink(json, "v" + i, from, from + 2, 1);
+			TestGraphs.addLink(json, "w" + i, from + 1, from + 3, 1);
+			TestGraphs.addLink(json, "x" + i, from + 2, from + 3, 1);
+		}
+		CompactGraph graph = new CompactGraph(json);
+		EqualCostPaths ecmp = of(graph, RouteMetric.HOP_COUNT, 0, 3 * diamonds);
+		assertEquals(ECMP_MAX_PATHS, ecmp.getPaths(ECMP_MAX_PATHS).size());
+		assertEquals(1, ecmp.getPaths(1).size());
+		List<GraphPath> all = ecmp.getPaths(1000);
+		assertEquals(64, all.size());
+		Set<String> sequences = new HashSet<String>();
+		for (GraphPath path : all) {
+			checkPath(graph, path, 0, 3 * diamonds, 2 * diamonds);
+			assertTrue(sequences.add(Arrays.toString(path.getNodes())));
+		}
+	}
+
+	@Test
+	public void unreachableTarget() {
+		JsonObject json = TestGraphs.nodes(3);
+		TestGraphs.addLink(json, "a", 0, 1, 1);
+		assertNull(of(new CompactGraph(json), RouteMetric.HOP_COUNT, 0, 2));
+	}
+
+	@Test
+	public void matchesShortestPathEnumeration() {
+		for (int seed = 0; seed < 30; seed++) {
+			// few distinct latencies and parallel links make ties likely
+			CompactGraph graph = new CompactGraph(TestGraphs.random(12, 50, seed));
+			for (RouteMetric metric : new RouteMetric[] { RouteMetric.HOP_COUNT, RouteMetric.fromJson(RouteMetric.LATENCY) }) {
+				ShortestPathTree tree = new HeapDijkstraAlgorithm(graph, metric).getShortestPathTree(0);
+				for (int target = 1; target < graph.nodeCount(); target++) {
+					EqualCostPaths ecmp = EqualCostPaths.of(tree, metric, target);
+					if (!tree.isReachable(target)) {
+						assertNull(ecmp);
+						continue;
+					}
+					Set<String> expected = new HashSet<String>();
+					boolean[] onPath = new boolean[graph.nodeCount()];
+					onPath[0] = true;
+					enumerate(graph, metric, 0, target, tree.getDistance(target), new ArrayList<Integer>(), onPath,
+							expected);
+					Set<String> found = new HashSet<String>();
+					List<GraphPath> paths = ecmp.getPaths(1000);
+					for (GraphPath path : paths) {
+						assertEquals(tree.getDistance(target), path.getCost(), EPSILON);
+						found.add(Arrays.toString(path.getNodes()));
+					}
+					assertEquals("no node sequence twice", paths.size(), found.size());
+					assertEquals(expected, found);
+				}
+			}
+		}
+	}
+
+	private static EqualCostPaths of(CompactGraph graph, RouteMetric metric, int source, int target) {
+		return EqualCostPaths.of(new HeapDijkstraAlgorithm(graph, metric).getShortestPathTree(source), metric, target);
+	}
+
+	private static void checkPath(CompactGraph graph, GraphPath path, int source, int target, int length) {
+		int[] nodes = path.getNodes();
+		int[] edges = path.getEdges();
+		assertEquals(length, edges.length);
+		assertEquals(source, nodes[0]);
+		assertEquals(target, nodes[nodes.length - 1]);
+		for (int i = 0; i < edges.length; i++) {
+			assertEquals(nodes[i], graph.source(edges[i]));
+			assertEquals(nodes[i + 1], graph.target(edges[i]));
+		}
+	}
+
+	// node sequences of the simple paths costing exactly the budget
+	private static void enumerate(CompactGraph graph, RouteMetric metric, int u, int target, double budget,
+			List<Integer> nodes, boolean[] onPath, Set<String> found) {
+		if ((u == target) && (Math.abs(budget) < EPSILON)) {
+			List<Integer> sequence = new ArrayList<Integer>(nodes);
+			sequence.add(0, 0);
+			found.add(sequence.toString());
+			return;
+		}
+		if (budget < -EPSILON) {
+			return;
+		}
+		for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+			int v = graph.target(e);
+			if (onPath[v]) {
+				continue;
+			}
+			onPath[v] = true;
+			nodes.add(v);
+			enumerate(graph, metric, v, target, budget - TestGraphs.weight(graph, metric, e), nodes, onPath, found);
+			nodes.remove(nodes.size() - 1);
+			onPath[v] = false;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package io.nms.client.routing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Yen paths: loopless, distinct and in cost order, checked on the classic
+ * example and against all the simple paths of small random graphs.
+ * Disjoint paths: no shared link, and the minimum total cost where the
+ * shortest path alone would block a second one.
+ */
+public class KShortestPathsTest {
+
+	private static final double EPSILON = 1e-9;
+	private static final RouteMetric LATENCY = RouteMetric.fromJson(RouteMetric.LATENCY);
+
+	// Yen's example: C=n0 D=n1 E=n2 F=n3 G=n4 H=n5
+	private static JsonObject yenExample() {
+		JsonObject graph = TestGraphs.nodes(6);
+		TestGraphs.addLink(graph, "cd", 0, 1, 3);
+		TestGraphs.addLink(graph, "ce", 0, 2, 2);
+		TestGraphs.addLink(graph, "df", 1, 3, 4);
+		TestGraphs.addLink(graph, "ed", 2, 1, 1);
+		TestGraphs.addLink(graph, "ef", 2, 3, 2);
+		TestGraphs.addLink(graph, "eg", 2, 4, 3);
+		TestGraphs.addLink(graph, "fg", 3, 4, 2);
+		TestGraphs.addLink(graph, "fh", 3, 5, 1);
+		TestGraphs.addLink(graph, "gh", 4, 5, 2);
+		return graph;
+	}
+
+	@Test
+	public void yenPathsInCostOrder() {
+		CompactGraph graph = new CompactGraph(yenExample());
+		List<GraphPath> paths = new KShortestPaths(graph, LATENCY).getShortestPaths("n0", "n5", 3, false);
+		assertEquals(3, paths.size());
+		assertArrayEquals(new int[] { 0, 2, 3, 5 }, paths.get(0).getNodes());
+		assertArrayEquals(new int[] { 0, 2, 4, 5 }, paths.get(1).getNodes());
+		assertEquals(5, paths.get(0).getCost(), EPSILON);
+		assertEquals(7, paths.get(1).getCost(), EPSILON);
+		assertEquals(8, paths.get(2).getCost(), EPSILON);
+		for (GraphPath path : paths) {
+			checkPath(graph, LATENCY, path, 0, 5);
+		}
+	}
+
+	@Test
+	public void fewerPathsThanRequested() {
+		CompactGraph graph = new CompactGraph(yenExample());
+		// C-E-F-H, C-E-G-H, C-D-F-H, C-E-D-F-H, C-E-F-G-H, C-D-F-G-H, C-E-D-F-G-H
+		List<GraphPath> paths = new KShortestPaths(graph, LATENCY).getShortestPaths("n0", "n5", 20, false);
+		assertEquals(7, paths.size());
+		assertTrue(new KShortestPaths(graph, LATENCY).getShortestPaths("n5", "n0", 3, false).isEmpty());
+	}
+
+	@Test
+	public void parallelLinksGiveOnePath() {
+		JsonObject json = TestGraphs.nodes(3);
+		TestGraphs.addLink(json, "a1", 0, 1, 1);
+		TestGraphs.addLink(json, "a2", 0, 1, 1);
+		TestGraphs.addLink(json, "b", 1, 2, 1);
+		TestGraphs.addLink(json, "c", 0, 2, 5);
+		CompactGraph graph = new CompactGraph(json);
+		List<GraphPath> paths = new KShortestPaths(graph, LATENCY).getShortestPaths("n0", "n2", 3, false);
+		assertEquals(2, paths.size());
+		assertArrayEquals(new int[] { 0, 1, 2 }, paths.get(0).getNodes());
+		assertArrayEquals(new int[] { 0, 2 }, paths.get(1).getNodes());
+	}
+
+	@Test
+	public void matchesSimplePathEnumeration() {
+		for (int seed = 0; seed < 30; seed++) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(9, 24, seed));
+			KShortestPaths ksp = new KShortestPaths(graph, LATENCY);
+			int source = seed % 9;
+			int target = (seed + 4) % 9;
+			List<Double> expected = simplePathCosts(graph, LATENCY, source, target);
+			List<GraphPath> paths = ksp.getShortestPaths(source, target, 6);
+			assertEquals(Math.min(6, expected.size()), paths.size());
+			Set<String> seen = new HashSet<String>();
+			for (int i = 0; i < paths.size(); i++) {
+				checkPath(graph, LATENCY, paths.get(i), source, target);
+				assertTrue("distinct node sequences", seen.add(Arrays.toString(paths.get(i).getNodes())));
+				assertEquals("cost of path " + i, expected.get(i), paths.get(i).getCost(), EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void disjointPathsAvoidTheTrap() {
+		// the shortest path s-a-b-t uses a link of each of the two disjoint paths s-a-t and s-b-t
+		JsonObject json = TestGraphs.nodes(4);
+		TestGraphs.addLink(json, "sa", 0, 1, 1);
+		TestGraphs.addLink(json, "ab", 1, 2, 1);
+		TestGraphs.addLink(json, "bt", 2, 3, 1);
+		TestGraphs.addLink(json, "sb", 0, 2, 3);
+		TestGraphs.addLink(json, "at", 1, 3, 3);
+		CompactGraph graph = new CompactGraph(json);
+		KShortestPaths ksp = new KShortestPaths(graph, LATENCY);
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, ksp.getDisjointPaths(0, 3, 1).get(0).getNodes());
+		List<GraphPath> paths = ksp.getDisjointPaths(0, 3, 2);
+		assertEquals(2, paths.size());
+		assertEquals(8, paths.get(0).getCost() + paths.get(1).getCost(), EPSILON);
+		checkDisjoint(graph, paths, 0, 3);
+		assertEquals(2, ksp.getDisjointPaths(0, 3, 5).size());
+	}
+
+	@Test
+	public void disjointPathsOnRandomGraphs() {
+		for (int seed = 0; seed < 30; seed++) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(20, 80, seed));
+			KShortestPaths ksp = new KShortestPaths(graph, LATENCY);
+			int source = seed % 20;
+			int target = (seed + 9) % 20;
+			List<GraphPath> paths = ksp.getDisjointPaths(source, target, 3);
+			checkDisjoint(graph, paths, source, target);
+			ShortestPathTree tree = new HeapDijkstraAlgorithm(graph, LATENCY).getShortestPathTree(source);
+			assertEquals(tree.isReachable(target), !paths.isEmpty());
+			// one path alone is a shortest path
+			List<GraphPath> single = ksp.getDisjointPaths(source, target, 1);
+			if (!single.isEmpty()) {
+				assertEquals(tree.getDistance(target), single.get(0).getCost(), EPSILON);
+			}
+		}
+	}
+
+	// paths sharing no link, loopless, in cost order
+	private static void checkDisjoint(CompactGraph graph, List<GraphPath> paths, int source, int target) {
+		Set<Integer> used = new HashSet<Integer>();
+		for (int i = 0; i < paths.size(); i++) {
+			checkPath(graph, LATENCY, paths.get(i), source, target);
+			for (int e : paths.get(i).getEdges()) {
+				assertTrue("link used twice", used.add(e));
+			}
+			if (i > 0) {
+				assertTrue(paths.get(i - 1).getCost() <= paths.get(i).getCost() + EPSILON);
+			}
+		}
+	}
+
+	// chained edges from the source to the target, no node twice, cost of its edges
+	private static void checkPath(CompactGraph graph, RouteMetric metric, GraphPath path, int source, int target) {
+		int[] nodes = path.getNodes();
+		int[] edges = path.getEdges();
+		assertEquals(source, nodes[0]);
+		assertEquals(target, nodes[nodes.length - 1]);
+		assertEquals(nodes.length, edges.length + 1);
+		Set<Integer> visited = new HashSet<Integer>();
+		double cost = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			assertTrue("loopless", visited.add(nodes[i]));
+			if (i < edges.length) {
+				assertEquals(nodes[i], graph.source(edges[i]));
+				assertEquals(nodes[i + 1], graph.target(edges[i]));
+				cost += TestGraphs.weight(graph, metric, edges[i]);
+			}
+		}
+		assertEquals(cost, path.getCost(), EPSILON);
+	}
+
+	// sorted costs of the simple paths, the cheapest link between two nodes standing for the others
+	private static List<Double> simplePathCosts(CompactGraph graph, RouteMetric metric, int source, int target) {
+		List<Double> costs = new ArrayList<Double>();
+		boolean[] onPath = new boolean[graph.nodeCount()];
+		onPath[source] = true;
+		enumerate(graph, metric, source, target, 0, onPath, costs);
+		Collections.sort(costs);
+		return costs;
+	}
+
+	private static void enumerate(CompactGraph graph, RouteMetric metric, int u, int target, double cost,
+			boolean[] onPath, List<Double> costs) {
+		if (u == target) {
+			costs.add(cost);
+			return;
+		}
+		double[] cheapest = new double[graph.nodeCount()];
+		Arrays.fill(cheapest, Double.POSITIVE_INFINITY);
+		for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+			int v = graph.target(e);
+			cheapest[v] = Math.min(cheapest[v], TestGraphs.weight(graph, metric, e));
+		}
+		for (int v = 0; v < graph.nodeCount(); v++) {
+			if (!onPath[v] && !Double.isInfinite(cheapest[v])) {
+				onPath[v] = true;
+				enumerate(graph, metric, v, target, cost + cheapest[v], onPath, costs);
+				onPath[v] = false;
+			}
+		}
+	}
+}
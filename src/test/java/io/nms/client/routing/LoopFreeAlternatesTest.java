@@ -0,0 +1,149 @@
+package io.nms.client.routing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Loop-free alternates checked against the RFC 5286 inequality
+ * d(N, D) < d(N, S) + d(S, D) on a ring and on random meshes
+ */
+public class LoopFreeAlternatesTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static LoopFreeAlternates compute(CompactGraph graph, RouteMetric metric) {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			return LoopFreeAlternates.compute(AllPairsPaths.compute(graph, metric, pool), pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// ring of n nodes with links both ways
+	private static JsonObject ring(int n) {
+		JsonObject graph = TestGraphs.nodes(n);
+		for (int i = 0; i < n; i++) {
+			TestGraphs.addBoth(graph, "r" + i, i, (i + 1) % n, 1);
+		}
+		return graph;
+	}
+
+	@Test
+	public void ringOfFive() {
+		CompactGraph graph = new CompactGraph(ring(5));
+		LoopFreeAlternates lfa = compute(graph, RouteMetric.HOP_COUNT);
+		// towards a neighbour, the other neighbour's path comes back through S: d(4, 1) = d(4, 0) + d(0, 1)
+		assertEquals(-1, lfa.getAlternateEdge(0, 1));
+		// two hops away, the other way round is loop free: d(4, 2) = 2 < d(4, 0) + d(0, 2) = 3
+		int e = lfa.getAlternateEdge(0, 2);
+		assertTrue(e >= 0);
+		assertEquals(0, graph.source(e));
+		assertEquals(4, graph.target(e));
+		assertArrayEquals(new int[] { 0, 4, 3, 2 }, lfa.getRepairPath(0, 2));
+		// the failed primary edge is avoided, any other edge keeps the shortest path
+		int primary = graph.edgeOf("r0f");
+		assertArrayEquals(new int[] { 0, 4, 3, 2 }, lfa.getRepairPath(0, 2, primary));
+		assertArrayEquals(new int[] { 0, 1, 2 }, lfa.getRepairPath(0, 2, graph.edgeOf("r4b")));
+	}
+
+	@Test
+	public void ringOfFourAlternates() {
+		// none towards a neighbour; towards the opposite node the way not taken ties and is loop free
+		CompactGraph graph = new CompactGraph(ring(4));
+		LoopFreeAlternates lfa = compute(graph, RouteMetric.HOP_COUNT);
+		for (int s = 0; s < 4; s++) {
+			assertEquals(-1, lfa.getAlternateEdge(s, (s + 1) % 4));
+			assertEquals(-1, lfa.getAlternateEdge(s, (s + 3) % 4));
+		}
+		assertTrue(lfa.getAlternateEdge(0, 2) >= 0);
+	}
+
+	@Test
+	public void randomMeshes() {
+		for (RouteMetric metric : new RouteMetric[] { RouteMetric.HOP_COUNT, RouteMetric.fromJson(RouteMetric.LATENCY) }) {
+			for (int seed = 0; seed < 10; seed++) {
+				JsonObject json = TestGraphs.random(25, 60, seed);
+				// links both ways so most pairs have neighbours to choose from
+				for (int i = 0; i < 25; i++) {
+					TestGraphs.addBoth(json, "m" + i, i, (i * 7 + 3) % 25, 1 + (i % 4));
+				}
+				check(new CompactGraph(json), metric);
+			}
+		}
+	}
+
+	/*
+	 * Every alternate leaves S by another edge than the primary and meets
+	 * the inequality; pairs without one have no neighbour meeting it, and
+	 * node-protecting alternates are chosen when one exists
+	 */
+	private static void check(CompactGraph graph, RouteMetric metric) {
+		LoopFreeAlternates lfa = compute(graph, metric);
+		AllPairsPaths paths = lfa.getPaths();
+		int n = graph.nodeCount();
+		for (int s = 0; s < n; s++) {
+			ShortestPathTree tree = new HeapDijkstraAlgorithm(graph, metric).getShortestPathTree(s);
+			for (int d = 0; d < n; d++) {
+				if ((d == s) || !tree.isReachable(d)) {
+					assertEquals(-1, lfa.getAlternateEdge(s, d));
+					continue;
+				}
+				assertEquals(tree.getDistance(d), paths.getDistance(s, d), EPSILON);
+				int primary = firstEdge(paths, s, d);
+				int p = graph.target(primary);
+				boolean anyLoopFree = false;
+				boolean anyProtecting = false;
+				for (int e = graph.firstEdge(s); e < graph.endEdge(s); e++) {
+					int v = graph.target(e);
+					if ((e != primary) && (v != s) && loopFree(paths, v, s, d)) {
+						anyLoopFree = true;
+						anyProtecting |= (v != p) && loopFree(paths, v, p, d);
+					}
+				}
+				int alternate = lfa.getAlternateEdge(s, d);
+				assertEquals("alternate of " + s + " towards " + d, anyLoopFree, alternate >= 0);
+				if (alternate < 0) {
+					continue;
+				}
+				int v = graph.target(alternate);
+				assertEquals(s, graph.source(alternate));
+				assertTrue(alternate != primary);
+				assertTrue(loopFree(paths, v, s, d));
+				assertEquals(anyProtecting, (v != p) && loopFree(paths, v, p, d));
+				int[] repair = lfa.getRepairPath(s, d, primary);
+				assertNotNull(repair);
+				assertEquals(s, repair[0]);
+				assertEquals(v, repair[1]);
+				assertEquals(d, repair[repair.length - 1]);
+				for (int i = 1; i < repair.length; i++) {
+					assertFalse("no loop through S", repair[i] == s);
+				}
+			}
+		}
+	}
+
+	// d(N, D) < d(N, X) + d(X, D)
+	private static boolean loopFree(AllPairsPaths paths, int neighbour, int x, int d) {
+		return paths.getDistance(neighbour, d) < paths.getDistance(neighbour, x) + paths.getDistance(x, d);
+	}
+
+	// first edge of the shortest path from s to d
+	private static int firstEdge(AllPairsPaths paths, int s, int d) {
+		CompactGraph graph = paths.getGraph();
+		int e = paths.getPredecessorEdge(s, d);
+		while (graph.source(e) != s) {
+			e = paths.getPredecessorEdge(s, graph.source(e));
+		}
+		return e;
+	}
+}
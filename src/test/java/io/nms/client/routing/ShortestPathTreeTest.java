@@ -0,0 +1,173 @@
+package io.nms.client.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Trees repaired by ShortestPathTree.update against trees computed
+ * from scratch on the changed graph
+ */
+public class ShortestPathTreeTest {
+
+	private static final double EPSILON = 1e-9;
+	private static final RouteMetric[] METRICS = { RouteMetric.HOP_COUNT, RouteMetric.fromJson(RouteMetric.LATENCY) };
+
+	@Test
+	public void repairsAfterLinkDeletions() {
+		Random random = new Random(1);
+		for (int seed = 0; seed < 20; seed++) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(30, 90, seed));
+			List<String> removed = new ArrayList<String>();
+			for (int i = 0; i < 3; i++) {
+				removed.add(graph.linkId(random.nextInt(graph.edgeCount())));
+			}
+			checkAllSources(graph, graph.removeLinks(removed));
+		}
+	}
+
+	@Test
+	public void repairsAfterNodeDeletions() {
+		Random random = new Random(2);
+		for (int seed = 0; seed < 20; seed++) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(30, 90, seed));
+			GraphChange change = graph.removeNode("n" + random.nextInt(30));
+			assertNotNull(change);
+			checkAllSources(graph, change);
+		}
+	}
+
+	@Test
+	public void repairsAfterAdditions() {
+		for (int seed = 0; seed < 20; seed++) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(30, 60, seed));
+			// a new node with links both ways, and a shortcut between existing nodes
+			GraphChange change = graph.apply(Collections.<String>emptyList(), Collections.<String>emptyList(),
+					Collections.singletonList(TestGraphs.node("x")),
+					Arrays.asList(TestGraphs.link("x1", "n" + (seed % 30), "x", 1),
+							TestGraphs.link("x2", "x", "n" + ((seed + 7) % 30), 1),
+							TestGraphs.link("x3", "n" + ((seed + 3) % 30), "n" + ((seed + 11) % 30), 1)));
+			assertNotNull(change);
+			assertEquals(31, change.getGraph().nodeCount());
+			checkAllSources(graph, change);
+		}
+	}
+
+	@Test
+	public void repairsAcrossTombstonedIndexes() {
+		Random random = new Random(3);
+		for (RouteMetric metric : METRICS) {
+			CompactGraph graph = new CompactGraph(TestGraphs.random(40, 140, 4));
+			int source = 0;
+			ShortestPathTree tree = new HeapDijkstraAlgorithm(graph, metric).getShortestPathTree(source);
+			for (int step = 0; step < 40; step++) {
+				GraphChange change = randomChange(graph, random, step, source);
+				if (change == null) {
+					continue;
+				}
+				tree = tree.update(change, metric);
+				assertNotNull(tree);
+				graph = change.getGraph();
+				checkTree(tree, graph, metric);
+			}
+			assertTrue("deleted nodes keep their indexes", graph.nodeCount() > graph.liveNodeCount());
+			for (int u = 0; u < graph.nodeCount(); u++) {
+				if (!graph.containsNode(u)) {
+					assertFalse(tree.isReachable(u));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void notRepairedWhenSourceRemoved() {
+		CompactGraph graph = new CompactGraph(TestGraphs.random(10, 30, 5));
+		ShortestPathTree tree = new HeapDijkstraAlgorithm(graph).getShortestPathTree(graph.indexOf("n3"));
+		assertNull(tree.update(graph.removeNode("n3"), RouteMetric.HOP_COUNT));
+	}
+
+	@Test
+	public void notRepairedForAnotherGraph() {
+		CompactGraph graph = new CompactGraph(TestGraphs.random(10, 30, 6));
+		CompactGraph other = new CompactGraph(TestGraphs.random(10, 30, 6));
+		ShortestPathTree tree = new HeapDijkstraAlgorithm(graph).getShortestPathTree(0);
+		assertNull(tree.update(other.removeLink(other.linkId(0)), RouteMetric.HOP_COUNT));
+	}
+
+	// deletes a node other than the source, deletes a link or adds a node with two links
+	private static GraphChange randomChange(CompactGraph graph, Random random, int step, int source) {
+		switch (random.nextInt(3)) {
+		case 0:
+			int u = random.nextInt(graph.nodeCount());
+			if ((u == source) || !graph.containsNode(u)) {
+				return null;
+			}
+			return graph.removeNode(graph.nodeId(u));
+		case 1:
+			return (graph.edgeCount() == 0) ? null : graph.removeLink(graph.linkId(random.nextInt(graph.edgeCount())));
+		default:
+			String id = "x" + step;
+			List<JsonObject> links = new ArrayList<JsonObject>();
+			for (int i = 0; i < 2; i++) {
+				int v = random.nextInt(graph.nodeCount());
+				if (graph.containsNode(v)) {
+					links.add((i == 0)
+							? TestGraphs.link(id + "in", graph.nodeId(v), id, 1 + random.nextInt(5))
+							: TestGraphs.link(id + "out", id, graph.nodeId(v), 1 + random.nextInt(5)));
+				}
+			}
+			return graph.apply(Collections.<String>emptyList(), Collections.<String>emptyList(),
+					Collections.singletonList(TestGraphs.node(id)), links);
+		}
+	}
+
+	// repairs the tree of every source kept by the change
+	private static void checkAllSources(CompactGraph graph, GraphChange change) {
+		for (RouteMetric metric : METRICS) {
+			HeapDijkstraAlgorithm dijkstra = new HeapDijkstraAlgorithm(graph, metric);
+			for (int source = 0; source < graph.nodeCount(); source++) {
+				ShortestPathTree repaired = dijkstra.getShortestPathTree(source).update(change, metric);
+				if (change.removesNode(source)) {
+					assertNull(repaired);
+					continue;
+				}
+				assertNotNull(repaired);
+				checkTree(repaired, change.getGraph(), metric);
+			}
+		}
+	}
+
+	// same distances as a fresh tree, and predecessor edges on shortest paths
+	private static void checkTree(ShortestPathTree tree, CompactGraph graph, RouteMetric metric) {
+		assertTrue(tree.getGraph() == graph);
+		int source = tree.getSource();
+		ShortestPathTree fresh = new HeapDijkstraAlgorithm(graph, metric).getShortestPathTree(source);
+		for (int v = 0; v < graph.nodeCount(); v++) {
+			assertEquals("reachability of " + v, fresh.isReachable(v), tree.isReachable(v));
+			if (!tree.isReachable(v)) {
+				assertEquals(-1, tree.getPredecessorEdge(v));
+				continue;
+			}
+			assertEquals("distance of " + v, fresh.getDistance(v), tree.getDistance(v), EPSILON);
+			if (v == source) {
+				continue;
+			}
+			int e = tree.getPredecessorEdge(v);
+			assertEquals(v, graph.target(e));
+			assertEquals(tree.getDistance(v),
+					tree.getDistance(graph.source(e)) + TestGraphs.weight(graph, metric, e), EPSILON);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package io.nms.client.routing;
+
+import java.util.Random;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Topologies for the routing tests, in the JSON form read by CompactGraph.
+ * Nodes are named "n0", "n1", ... and links carry a latency only.
+ */
+final class TestGraphs {
+
+	private TestGraphs() {
+	}
+
+	// nodes n0 to n(count - 1), without links
+	static JsonObject nodes(int count) {
+		JsonArray nodes = new JsonArray();
+		for (int i = 0; i < count; i++) {
+			nodes.add(node("n" + i));
+		}
+		return new JsonObject()
+				.put("nodes", nodes)
+				.put("links", new JsonArray());
+	}
+
+	static JsonObject node(String id) {
+		return new JsonObject()
+				.put("_id", id)
+				.put("name", id);
+	}
+
+	static JsonObject link(String id, String source, String target, double latency) {
+		return new JsonObject()
+				.put("_id", id)
+				.put("source", source)
+				.put("target", target)
+				.put(RouteMetric.LATENCY, latency);
+	}
+
+	// adds a link between two of the numbered nodes
+	static JsonObject addLink(JsonObject graph, String id, int source, int target, double latency) {
+		graph.getJsonArray("links").add(link(id, "n" + source, "n" + target, latency));
+		return graph;
+	}
+
+	// adds a link in each direction, id + "f" and id + "b"
+	static JsonObject addBoth(JsonObject graph, String id, int a, int b, double latency) {
+		addLink(graph, id + "f", a, b, latency);
+		return addLink(graph, id + "b", b, a, latency);
+	}
+
+	// directed graph with up to m links of latency 1 to 5, no self loops
+	static JsonObject random(int n, int m, long seed) {
+		Random random = new Random(seed);
+		JsonObject graph = nodes(n);
+		for (int i = 0; i < m; i++) {
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			if (a != b) {
+				addLink(graph, "l" + i, a, b, 1 + random.nextInt(5));
+			}
+		}
+		return graph;
+	}
+
+	// weight of an edge for the metric, as used by the searches
+	static double weight(CompactGraph graph, RouteMetric metric, int edge) {
+		return graph.weights(metric)[edge];
+	}
+}
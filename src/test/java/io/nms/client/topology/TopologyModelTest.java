@@ -0,0 +1,181 @@
+package io.nms.client.topology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/*
+ * Cursor paging of nodes and links, including changes between pages
+ */
+public class TopologyModelTest {
+
+	private TopologyModel model;
+
+	@Before
+	public void setUp() {
+		// nodes n00 to n09, links l00 to l08 chaining them
+		JsonArray nodes = new JsonArray();
+		JsonArray links = new JsonArray();
+		for (int i = 0; i < 10; i++) {
+			nodes.add(node(id("n", i)));
+		}
+		for (int i = 0; i < 9; i++) {
+			links.add(link(id("l", i), id("n", i), id("n", i + 1)));
+		}
+		model = new TopologyModel();
+		model.load(new JsonObject().put("nodes", nodes).put("links", links));
+	}
+
+	@Test
+	public void firstMiddleAndLastPages() {
+		JsonObject first = model.getNodePage("", 4);
+		assertEquals(Arrays.asList("n00", "n01", "n02", "n03"), ids(first));
+		assertEquals("n03", first.getString("cursor"));
+		JsonObject middle = model.getNodePage(first.getString("cursor"), 4);
+		assertEquals(Arrays.asList("n04", "n05", "n06", "n07"), ids(middle));
+		assertEquals("n07", middle.getString("cursor"));
+		JsonObject last = model.getNodePage(middle.getString("cursor"), 4);
+		assertEquals(Arrays.asList("n08", "n09"), ids(last));
+		assertFalse(last.containsKey("cursor"));
+	}
+
+	@Test
+	public void linkPages() {
+		JsonObject first = model.getLinkPage("", 5);
+		assertEquals(Arrays.asList("l00", "l01", "l02", "l03", "l04"), ids(first));
+		JsonObject last = model.getLinkPage(first.getString("cursor"), 5);
+		assertEquals(Arrays.asList("l05", "l06", "l07", "l08"), ids(last));
+		assertFalse(last.containsKey("cursor"));
+	}
+
+	@Test
+	public void limitBoundaries() {
+		// the last full page has no cursor when nothing follows
+		JsonObject all = model.getNodePage("", 10);
+		assertEquals(10, ids(all).size());
+		assertFalse(all.containsKey("cursor"));
+		assertEquals(10, ids(model.getNodePage("", 11)).size());
+		JsonObject second = model.getNodePage(model.getNodePage("", 5).getString("cursor"), 5);
+		assertEquals(Arrays.asList("n05", "n06", "n07", "n08", "n09"), ids(second));
+		assertFalse(second.containsKey("cursor"));
+		// one document per page
+		JsonObject single = model.getNodePage("", 1);
+		assertEquals(Arrays.asList("n00"), ids(single));
+		assertEquals("n00", single.getString("cursor"));
+		// past the last document
+		JsonObject beyond = model.getNodePage("n09", 4);
+		assertTrue(ids(beyond).isEmpty());
+		assertFalse(beyond.containsKey("cursor"));
+	}
+
+	@Test
+	public void emptyModel() {
+		TopologyModel empty = new TopologyModel();
+		empty.load(new JsonObject());
+		JsonObject page = empty.getNodePage("", 4);
+		assertTrue(ids(page).isEmpty());
+		assertFalse(page.containsKey("cursor"));
+		assertTrue(ids(empty.getLinkPage("", 4)).isEmpty());
+	}
+
+	@Test
+	public void cursorOfDeletedDocument() {
+		JsonObject first = model.getNodePage("", 4);
+		assertEquals("n03", first.getString("cursor"));
+		assertEquals("n03", model.removeNode("n03").getString("_id"));
+		assertEquals(Arrays.asList("n04", "n05", "n06", "n07"), ids(model.getNodePage("n03", 4)));
+		// its links went with it
+		assertNull(model.getLink("l02"));
+		assertNull(model.getLink("l03"));
+		assertEquals(Arrays.asList("l04", "l05"), ids(model.getLinkPage("l01", 2)));
+	}
+
+	@Test
+	public void changesBetweenPages() {
+		List<String> seen = new ArrayList<String>();
+		JsonObject page = model.getNodePage("", 3);
+		seen.addAll(ids(page));
+		// before the cursor: not returned; after it: returned once; deleted ahead: not returned
+		model.putNode(node("n015"));
+		model.putNode(node("n055"));
+		model.removeNode("n07");
+		while (page.containsKey("cursor")) {
+			page = model.getNodePage(page.getString("cursor"), 3);
+			seen.addAll(ids(page));
+		}
+		assertEquals(Arrays.asList("n00", "n01", "n02", "n03", "n04", "n05", "n055", "n06", "n08", "n09"), seen);
+		assertEquals(seen.size(), new HashSet<String>(seen).size());
+	}
+
+	@Test
+	public void replacedDocumentKeepsItsPlace() {
+		model.putNode(node("n05").put("name", "renamed"));
+		JsonObject page = model.getNodePage("n04", 1);
+		assertEquals(Arrays.asList("n05"), ids(page));
+		assertEquals("renamed", page.getJsonArray("docs").getJsonObject(0).getString("name"));
+		assertEquals("n05", model.getNodeByName("renamed").getString("_id"));
+		assertNull(model.getNodeByName("n05"));
+		assertEquals(10, model.nodeCount());
+	}
+
+	@Test
+	public void everyDocumentOnceUnderChurn() {
+		// documents present for the whole walk are returned exactly once, whatever changes meanwhile
+		Set<String> stable = new HashSet<String>();
+		for (int i = 0; i < 10; i += 2) {
+			stable.add(id("n", i));
+		}
+		List<String> seen = new ArrayList<String>();
+		JsonObject page = model.getNodePage("", 2);
+		seen.addAll(ids(page));
+		int step = 0;
+		while (page.containsKey("cursor")) {
+			model.removeNode(id("n", 2 * step + 1));
+			model.putNode(node("x" + step));
+			model.putNode(node(id("n", 2 * step) + "a"));
+			page = model.getNodePage(page.getString("cursor"), 2);
+			seen.addAll(ids(page));
+			step++;
+		}
+		assertEquals(seen.size(), new HashSet<String>(seen).size());
+		assertTrue(seen.containsAll(stable));
+	}
+
+	private static String id(String prefix, int i) {
+		return String.format("%s%02d", prefix, i);
+	}
+
+	private static JsonObject node(String id) {
+		return new JsonObject()
+				.put("_id", id)
+				.put("name", id);
+	}
+
+	private static JsonObject link(String id, String source, String target) {
+		return new JsonObject()
+				.put("_id", id)
+				.put("source", source)
+				.put("target", target);
+	}
+
+	private static List<String> ids(JsonObject page) {
+		List<String> ids = new ArrayList<String>();
+		for (Object doc : page.getJsonArray("docs")) {
+			ids.add(((JsonObject) doc).getString("_id"));
+		}
+		return ids;
+	}
+}